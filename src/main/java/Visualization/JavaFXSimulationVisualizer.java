@@ -3,17 +3,29 @@
 // File: JavaFXSimulationVisualizer.java
 package Visualization;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import persistence.CompactTrace;
+import persistence.ReplaySpec;
+import persistence.ReplayTrace;
+import persistence.StreamingRecorder;
+import persistence.Trace;
+import persistence.TraceIndex;
+import simulation.Node;
+import simulation.Rc;
+import simulation.TraversalCounters;
+import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
@@ -21,17 +33,23 @@ import javafx.scene.shape.Line;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
+import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
+import java.io.BufferedReader;
 import java.io.FileReader;
-import java.io.Reader;
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntBinaryOperator;
 
 /**
- * A single-file JavaFX visualizer that expects the Recorder JSON (list of Step objects with NodeState entries).
+ * A single-file JavaFX visualizer for Recorder JSON traces (list of Step objects with NodeState entries)
+ * and replay files (see ReplaySpec), whose steps are regenerated by re-running the simulation.
+ * A live mode runs a simulation on a background thread and renders its steps as they arrive.
+ * A heat overlay shows where the agent spent its moves over the whole trace.
+ * A navigation bar jumps to color changes, outer iterations and node visits using a TraceIndex.
  *
  * - Draws static edges using neighborIds from the first step (so edges never disappear).
  * - Colors nodes by their color integer.
@@ -39,8 +57,19 @@ import java.util.stream.Collectors;
  * - Shows the active color in the UI.
  */
 public class JavaFXSimulationVisualizer extends Application {
-    private List<Step> steps = new ArrayList<>();
+    private Trace trace;
+    private TraceIndex index;
+    // Node id -> node index of the loaded trace
+    private Map<Integer, Integer> indexById = new HashMap<>();
+    // Node state of the displayed step, indexed like the trace's nodes
+    private int[] colors = new int[0];
+    private int[] parents = new int[0];
     private Map<Integer, VisualNode> visualNodes = new HashMap<>();
+    // Undirected edge (smaller index, larger index) -> its line, for the heat overlay
+    private Map<String, Line> edgeLines = new HashMap<>();
+    // Traversal counts of the loaded trace, null in live mode
+    private TraversalCounters heat;
+    private CheckBox heatBox;
     private Pane graphPane;
     private Text stepLabel;
     private Rectangle activeColorIndicator;
@@ -51,6 +80,12 @@ public class JavaFXSimulationVisualizer extends Application {
     private Slider scrubSlider;
     private Slider speedSlider;
 
+    // Live mode: the simulation thread produces frames, an AnimationTimer consumes them on the FX thread.
+    // The capacity only applies to BLOCK mode, DROP keeps just the newest frame.
+    private static final int LIVE_QUEUE_CAPACITY = 1024;
+    private Thread liveThread;
+    private AnimationTimer liveTimer;
+
     @Override
     public void start(Stage primaryStage) {
         BorderPane root = new BorderPane();
@@ -63,6 +98,7 @@ public class JavaFXSimulationVisualizer extends Application {
 
         // Controls
         Button loadBtn = new Button("Load JSON");
+        Button liveBtn = new Button("Live");
         Button prevBtn = new Button("<< Prev");
         Button playBtn = new Button("Play");
         Button nextBtn = new Button("Next >>");
@@ -81,16 +117,48 @@ public class JavaFXSimulationVisualizer extends Application {
         speedSlider = new Slider(0.1, 3.0, 1.0);
         speedSlider.setPrefWidth(120);
 
-        HBox controls = new HBox(10, loadBtn, prevBtn, playBtn, nextBtn,
+        heatBox = new CheckBox("Heat");
+        heatBox.selectedProperty().addListener((obs, oldV, newV) -> applyHeat());
+
+        HBox controls = new HBox(10, loadBtn, liveBtn, prevBtn, playBtn, nextBtn,
                 new Label("Speed:"), speedSlider,
                 new Label("Step:"), scrubSlider, stepLabel,
-                activeColorLabel, activeColorIndicator);
+                activeColorLabel, activeColorIndicator, heatBox);
         controls.setPadding(new Insets(8));
 
-        root.setBottom(controls);
+        // Event navigation
+        Button prevChangeBtn = new Button("<< Color change");
+        Button nextChangeBtn = new Button("Color change >>");
+        TextField outerField = new TextField();
+        outerField.setPrefColumnCount(4);
+        Button outerBtn = new Button("Go to outer");
+        TextField nodeField = new TextField();
+        nodeField.setPrefColumnCount(4);
+        Button firstVisitBtn = new Button("First visit");
+        Button prevVisitBtn = new Button("<< Visit");
+        Button nextVisitBtn = new Button("Visit >>");
+        Button lastVisitBtn = new Button("Last visit");
+        HBox navigation = new HBox(10, prevChangeBtn, nextChangeBtn,
+                new Label("Outer:"), outerField, outerBtn,
+                new Label("Node id:"), nodeField, firstVisitBtn, prevVisitBtn, nextVisitBtn, lastVisitBtn);
+        navigation.setPadding(new Insets(0, 8, 8, 8));
+
+        root.setBottom(new VBox(controls, navigation));
+
+        prevChangeBtn.setOnAction(e -> jump(index == null ? -1 : index.prevColorChange(stepIndex)));
+        nextChangeBtn.setOnAction(e -> jump(index == null ? -1 : index.nextColorChange(stepIndex)));
+        outerBtn.setOnAction(e -> {
+            Integer k = parseField(outerField);
+            jump(index == null || k == null ? -1 : index.outerStart(k));
+        });
+        firstVisitBtn.setOnAction(e -> jumpToVisit(nodeField, (node, step) -> index.firstVisit(node)));
+        prevVisitBtn.setOnAction(e -> jumpToVisit(nodeField, (node, step) -> index.prevVisit(node, step)));
+        nextVisitBtn.setOnAction(e -> jumpToVisit(nodeField, (node, step) -> index.nextVisit(node, step)));
+        lastVisitBtn.setOnAction(e -> jumpToVisit(nodeField, (node, step) -> index.lastVisit(node)));
 
         // Button actions
         loadBtn.setOnAction(e -> onLoad(primaryStage));
+        liveBtn.setOnAction(e -> onLive());
         prevBtn.setOnAction(e -> goTo(stepIndex - 1));
         nextBtn.setOnAction(e -> goTo(stepIndex + 1));
 
@@ -106,7 +174,7 @@ public class JavaFXSimulationVisualizer extends Application {
 
         scrubSlider.valueProperty().addListener((obs, oldV, newV) -> {
             if (!scrubSlider.isValueChanging()) return;
-            if (steps.isEmpty()) return;
+            if (trace == null) return;
             int idx = (int) Math.round(newV.doubleValue());
             goTo(idx);
         });
@@ -120,6 +188,7 @@ public class JavaFXSimulationVisualizer extends Application {
         Scene scene = new Scene(root);
         primaryStage.setTitle("Simulation Visualizer");
         primaryStage.setScene(scene);
+        primaryStage.setOnHidden(e -> stopLive());
         primaryStage.show();
     }
 
@@ -130,23 +199,87 @@ public class JavaFXSimulationVisualizer extends Application {
         java.io.File file = fc.showOpenDialog(stage);
         if (file == null) return;
 
-        try (Reader r = new FileReader(file)) {
-            Gson gson = new Gson();
-            Type t = new TypeToken<List<Step>>() {}.getType();
-            steps = gson.fromJson(r, t);
+        // Replays re-run the simulation and large traces take a while to parse, so load off the FX thread
+        Task<Trace> task = new Task<>() {
+            @Override
+            protected Trace call() throws Exception {
+                try (BufferedReader r = new BufferedReader(new FileReader(file))) {
+                    return isReplayFile(r) ? ReplayTrace.replay(ReplaySpec.load(r)) : CompactTrace.load(r);
+                }
+            }
+        };
+
+        ProgressIndicator spinner = new ProgressIndicator();
+        Button cancelBtn = new Button("Cancel");
+        // Cancelling interrupts the loader thread; a replay stops at Rc's next budget check
+        cancelBtn.setOnAction(e -> task.cancel(true));
+        VBox box = new VBox(10, new Label("Loading " + file.getName() + "..."), spinner, cancelBtn);
+        box.setPadding(new Insets(16));
+        Stage progress = new Stage();
+        progress.initOwner(stage);
+        progress.initModality(Modality.WINDOW_MODAL);
+        progress.setTitle("Loading");
+        progress.setScene(new Scene(box));
+        progress.setOnCloseRequest(e -> task.cancel(true));
+
+        task.setOnSucceeded(e -> {
+            progress.close();
+            showLoaded(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            progress.close();
+            task.getException().printStackTrace();
+            showAlert("Failed to load JSON", String.valueOf(task.getException().getMessage()));
+        });
+        task.setOnCancelled(e -> progress.close());
+
+        Thread loader = new Thread(task, "trace-loader");
+        loader.setDaemon(true);
+        loader.start();
+        progress.show();
+    }
 
-            if (steps.isEmpty()) {
+    private void showLoaded(Trace loaded) {
+        try {
+            if (loaded.stepCount() == 0) {
                 stepLabel.setText("Empty steps");
                 return;
             }
 
-            buildStaticGraph();
+            stopLive();
+            trace = loaded;
+            index = new TraceIndex(trace);
+            colors = new int[trace.nodeCount()];
+            parents = new int[trace.nodeCount()];
+            int[] ids = new int[trace.nodeCount()];
+            int[][] neighbors = new int[trace.nodeCount()][];
+            indexById.clear();
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = trace.nodeId(i);
+                neighbors[i] = trace.neighborIndices(i);
+                indexById.put(ids[i], i);
+            }
+            buildStaticGraph(ids, neighbors);
+            heat = countTraversals(trace);
+            applyHeat();
             stepIndex = 0;
             scrubSlider.setMin(0);
-            scrubSlider.setMax(steps.size() - 1);
+            scrubSlider.setMax(trace.stepCount() - 1);
             scrubSlider.setMajorTickUnit(1);
             scrubSlider.setBlockIncrement(1);
             goTo(0);
+            if (loaded instanceof ReplayTrace) {
+                ReplayTrace replay = (ReplayTrace) loaded;
+                if (replay.wallTimeCensored())
+                    showAlert("Replay is not exact", "The sweep stopped this run on its wall time limit, which is "
+                            + "not replayed; the replay ends at a different step than the original run");
+                else if ("steps".equals(replay.censorReason()))
+                    showAlert("Replay truncated", "The run is longer than " + ReplayTrace.MAX_STEPS
+                            + " steps; showing the first ones (raise the limit with -Drc.replay.maxSteps)");
+                else if (replay.censorReason() != null)
+                    showAlert("Replay stopped early", "The run was cut short by its budget ("
+                            + replay.censorReason() + "), showing the steps up to that point");
+            }
 
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -154,36 +287,144 @@ public class JavaFXSimulationVisualizer extends Application {
         }
     }
 
-    private void buildStaticGraph() {
+    // Recorder traces are JSON arrays, replay files are JSON objects
+    private boolean isReplayFile(BufferedReader r) throws IOException {
+        r.mark(1024);
+        int ch;
+        do {
+            ch = r.read();
+        } while (ch != -1 && Character.isWhitespace(ch));
+        r.reset();
+        return ch == '{';
+    }
+
+    private void onLive() {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Live simulation");
+        TextField nodesField = new TextField("30");
+        TextField densityField = new TextField("0.1");
+        TextField colorsField = new TextField("5");
+        CheckBox dropBox = new CheckBox("Drop frames when the view falls behind");
+        dropBox.setSelected(true);
+        GridPane form = new GridPane();
+        form.setHgap(8);
+        form.setVgap(8);
+        form.addRow(0, new Label("Nodes:"), nodesField);
+        form.addRow(1, new Label("Density:"), densityField);
+        form.addRow(2, new Label("Colors:"), colorsField);
+        form.add(dropBox, 0, 3, 2, 1);
+        dialog.getDialogPane().setContent(form);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        if (dialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
+
+        try {
+            int n = Integer.parseInt(nodesField.getText().trim());
+            double density = Double.parseDouble(densityField.getText().trim());
+            int c = Integer.parseInt(colorsField.getText().trim());
+            startLive(n, density, c, dropBox.isSelected() ? StreamingRecorder.Mode.DROP : StreamingRecorder.Mode.BLOCK);
+        } catch (Exception ex) {
+            showAlert("Failed to start live simulation", ex.getMessage());
+        }
+    }
+
+    private void startLive(int n, double density, int c, StreamingRecorder.Mode mode) {
+        stopLive();
+        stopPlayer();
+        List<Node> nodes = Node.generateRandomConnectedGraph(n, density, c);
+        StreamingRecorder stream = new StreamingRecorder(nodes, LIVE_QUEUE_CAPACITY, mode);
+
+        trace = null;
+        index = null;
+        heat = null;
+        colors = new int[nodes.size()];
+        parents = new int[nodes.size()];
+        buildStaticGraph(stream.nodeIds(), stream.neighborIndices());
+        applyHeat();
+        scrubSlider.setValue(0);
+
+        liveThread = new Thread(() -> {
+            try {
+                new Rc(c, stream).traverse(nodes);
+                stream.finish();
+            } catch (CancellationException ignored) {
+                // stopped from the UI while waiting for queue space
+            } catch (RuntimeException e) {
+                stream.fail(e);
+            }
+        }, "live-simulation");
+        liveThread.setDaemon(true);
+        liveThread.start();
+
+        liveTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                // BLOCK renders every step, one per frame; DROP renders only the newest available step
+                StreamingRecorder.Frame latest = stream.poll();
+                if (mode == StreamingRecorder.Mode.DROP) {
+                    for (StreamingRecorder.Frame f = latest; f != null; f = stream.poll())
+                        latest = f;
+                }
+                if (latest != null) {
+                    System.arraycopy(latest.colors, 0, colors, 0, colors.length);
+                    System.arraycopy(latest.parents, 0, parents, 0, parents.length);
+                    applyStateToVisual(latest.vCurIndex);
+                    showActiveColor(latest.activeColor);
+                    stepLabel.setText("Live step " + latest.stepId +
+                            (stream.droppedSteps() > 0 ? " (dropped " + stream.droppedSteps() + ")" : ""));
+                }
+                if (stream.isDone()) {
+                    stop();
+                    Throwable failure = stream.failure();
+                    if (failure == null) {
+                        stepLabel.setText(stepLabel.getText() + " - finished");
+                    } else {
+                        stepLabel.setText(stepLabel.getText() + " - failed");
+                        // showAndWait is not allowed while an animation pulse is processed
+                        Platform.runLater(() -> showAlert("Live simulation failed", String.valueOf(failure)));
+                    }
+                }
+            }
+        };
+        liveTimer.start();
+    }
+
+    private void stopLive() {
+        if (liveTimer != null) liveTimer.stop();
+        liveTimer = null;
+        // Rc notices the interrupt at its next budget check, a blocked producer immediately
+        if (liveThread != null) liveThread.interrupt();
+        liveThread = null;
+    }
+
+    private void buildStaticGraph(int[] ids, int[][] neighbors) {
         graphPane.getChildren().clear();
         visualNodes.clear();
+        edgeLines.clear();
 
-        // gather unique node ids from first step
-        Set<Integer> nodeIds = steps.get(0).nodeStates.stream().map(ns -> ns.id).collect(Collectors.toSet());
-        int n = nodeIds.size();
+        // nodes are laid out in id order
+        int n = ids.length;
         double cx = graphPane.getPrefWidth() / 2.0;
         double cy = graphPane.getPrefHeight() / 2.0;
         double radius = Math.min(cx, cy) - 120;
 
-        List<Integer> sorted = new ArrayList<>(nodeIds);
-        Collections.sort(sorted);
+        List<Integer> sorted = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) sorted.add(i);
+        sorted.sort(Comparator.comparingInt(i -> ids[i]));
 
-        // Create VisualNodes (with coordinates on a circle)
+        // Create VisualNodes (with coordinates on a circle), keyed by node index
         for (int i = 0; i < sorted.size(); i++) {
-            int id = sorted.get(i);
+            int index = sorted.get(i);
             double angle = 2 * Math.PI * i / Math.max(1, sorted.size());
             double x = cx + radius * Math.cos(angle);
             double y = cy + radius * Math.sin(angle);
-            VisualNode vn = new VisualNode(id, x, y, graphPane);
-            visualNodes.put(id, vn);
+            VisualNode vn = new VisualNode(ids[index], x, y, graphPane);
+            visualNodes.put(index, vn);
         }
 
-        // Draw static edges from neighborIds of step 0
-        Map<String, Line> drawn = new HashMap<>();
-        for (NodeState ns : steps.get(0).nodeStates) {
-            for (int nb : ns.neighborIds) {
-                int a = ns.id;
-                int b = nb;
+        // Draw static edges from the topology
+        Map<String, Line> drawn = edgeLines;
+        for (int a = 0; a < n; a++) {
+            for (int b : neighbors[a]) {
                 String key = a < b ? a + "-" + b : b + "-" + a;
                 if (drawn.containsKey(key)) continue;
                 VisualNode va = visualNodes.get(a);
@@ -197,36 +438,137 @@ public class JavaFXSimulationVisualizer extends Application {
             }
         }
 
-        // add nodes (edgeToParent behind circle and label)
+        // add nodes (heat halo and edgeToParent behind circle and label)
         for (VisualNode v : visualNodes.values()) {
-            graphPane.getChildren().addAll(v.edgeToParent, v.circle, v.label);
+            graphPane.getChildren().addAll(v.heatHalo, v.edgeToParent, v.circle, v.label);
+        }
+    }
+
+    /**
+     * Counts visits, recolors and per-port traversals from the trace in one pass. A move is a step whose
+     * current node is a neighbor of the previous step's current node; the port is looked up in that node's list.
+     */
+    private static TraversalCounters countTraversals(Trace trace) {
+        int n = trace.nodeCount();
+        int[] degrees = new int[n];
+        for (int v = 0; v < n; v++)
+            degrees[v] = trace.neighborIndices(v).length;
+        TraversalCounters counters = new TraversalCounters(degrees);
+
+        int prev = trace.vCurIndex(0);
+        for (int step = 1; step < trace.stepCount(); step++) {
+            int cur = trace.vCurIndex(step);
+            if (trace.recolored(step))
+                counters.nodeRecolors[cur]++;
+            if (cur != prev && prev >= 0 && cur >= 0) {
+                int[] nb = trace.neighborIndices(prev);
+                for (int port = 0; port < nb.length; port++) {
+                    if (nb[port] == cur) {
+                        counters.edgeTraversals[counters.portOffsets[prev] + port]++;
+                        counters.nodeVisits[cur]++;
+                        break;
+                    }
+                }
+            }
+            prev = cur;
+        }
+        return counters;
+    }
+
+    // Shows or hides the heat overlay: red halos scaled by node visits, edges colored by traversals in both directions
+    private void applyHeat() {
+        boolean on = heatBox.isSelected() && heat != null;
+        int maxVisits = 1;
+        int maxEdge = 1;
+        Map<String, Integer> edgeHeat = new HashMap<>();
+        if (on) {
+            for (int v = 0; v < heat.nodeCount(); v++) {
+                maxVisits = Math.max(maxVisits, heat.nodeVisits[v]);
+                int[] nb = trace.neighborIndices(v);
+                for (int port = 0; port < nb.length; port++) {
+                    String key = v < nb[port] ? v + "-" + nb[port] : nb[port] + "-" + v;
+                    int count = edgeHeat.merge(key, heat.edgeTraversals(v, port), Integer::sum);
+                    maxEdge = Math.max(maxEdge, count);
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, VisualNode> e : visualNodes.entrySet()) {
+            int v = e.getKey();
+            if (on)
+                e.getValue().setHeat((double) heat.nodeVisits[v] / maxVisits, heat.nodeVisits[v], heat.nodeRecolors[v]);
+            else
+                e.getValue().clearHeat();
+        }
+        for (Map.Entry<String, Line> e : edgeLines.entrySet()) {
+            Line line = e.getValue();
+            if (on) {
+                double t = (double) edgeHeat.getOrDefault(e.getKey(), 0) / maxEdge;
+                line.setStroke(Color.LIGHTGRAY.interpolate(Color.RED, t));
+                line.setStrokeWidth(2 + 4 * t);
+            } else {
+                line.setStroke(Color.LIGHTGRAY);
+                line.setStrokeWidth(2);
+            }
         }
     }
 
     private void goTo(int idx) {
-        if (steps.isEmpty()) return;
+        if (trace == null) return;
         if (idx < 0) idx = 0;
-        if (idx >= steps.size()) idx = steps.size() - 1;
+        if (idx >= trace.stepCount()) idx = trace.stepCount() - 1;
         stepIndex = idx;
-        Step step = steps.get(stepIndex);
-        applyStepToVisual(step);
-        stepLabel.setText("Step " + step.stepID + " (index=" + stepIndex + ")");
-        
-        // Update active color indicator
-        activeColorIndicator.setFill(mapColorInt(step.activeColor));
-        activeColorLabel.setText("Active Color: " + step.activeColor);
-        
+        trace.loadState(stepIndex, colors, parents);
+        applyStateToVisual(trace.vCurIndex(stepIndex));
+        stepLabel.setText("Step " + trace.stepId(stepIndex) + " (index=" + stepIndex +
+                ", outer " + index.outerIterationOf(stepIndex) + "/" + index.outerIterationCount() + ")");
+        showActiveColor(trace.activeColor(stepIndex));
+
         scrubSlider.valueProperty().removeListener((obs, ov, nv) -> {});
         scrubSlider.setValue(stepIndex);
     }
 
-    private void applyStepToVisual(Step step) {
-        for (NodeState ns : step.nodeStates) {
-            VisualNode vn = visualNodes.get(ns.id);
+    private void showActiveColor(int activeColor) {
+        activeColorIndicator.setFill(mapColorInt(activeColor));
+        activeColorLabel.setText("Active Color: " + activeColor);
+    }
+
+    // Goes to the step found by an index lookup; -1 means there is no such event
+    private void jump(int step) {
+        if (trace == null) return;
+        if (step < 0) {
+            stepLabel.setText("No such event (step index=" + stepIndex + ")");
+            return;
+        }
+        goTo(step);
+    }
+
+    private void jumpToVisit(TextField nodeField, IntBinaryOperator lookup) {
+        Integer id = parseField(nodeField);
+        Integer node = id == null ? null : indexById.get(id);
+        if (index == null || node == null) {
+            jump(-1);
+            return;
+        }
+        jump(lookup.applyAsInt(node, stepIndex));
+    }
+
+    private Integer parseField(TextField field) {
+        try {
+            return Integer.parseInt(field.getText().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Renders the current colors/parents arrays
+    private void applyStateToVisual(int vCur) {
+        for (int i = 0; i < colors.length; i++) {
+            VisualNode vn = visualNodes.get(i);
             if (vn == null) continue;
-            vn.setColor(mapColorInt(ns.color));
-            vn.setParent(ns.parent);
-            vn.setAsCurrent(step.vCurId == ns.id);
+            vn.setColor(mapColorInt(colors[i]));
+            vn.setParent(parents[i]);
+            vn.setAsCurrent(vCur == i);
         }
     }
 
@@ -253,7 +595,7 @@ public class JavaFXSimulationVisualizer extends Application {
         if (player != null) player.stop();
         double rate = 1.0 / speedSlider.getValue();
         player = new Timeline(new KeyFrame(Duration.seconds(rate), ev -> {
-            if (stepIndex < steps.size() - 1) goTo(stepIndex + 1);
+            if (trace != null && stepIndex < trace.stepCount() - 1) goTo(stepIndex + 1);
             else stopPlayer();
         }));
         player.setCycleCount(Timeline.INDEFINITE);
@@ -277,6 +619,8 @@ public class JavaFXSimulationVisualizer extends Application {
         final Circle circle;
         final Text label;
         final Line edgeToParent; // dynamic parent indicator
+        final Circle heatHalo; // heat overlay, hidden unless enabled
+        final Tooltip tooltip;
         final Pane graphPane;
         double x, y;
 
@@ -291,6 +635,21 @@ public class JavaFXSimulationVisualizer extends Application {
             edgeToParent = new Line(x, y, x, y);
             edgeToParent.setStrokeWidth(3);
             edgeToParent.setStroke(Color.TRANSPARENT);
+            heatHalo = new Circle(x, y, 18, Color.TRANSPARENT);
+            tooltip = new Tooltip("Node " + id);
+            Tooltip.install(circle, tooltip);
+        }
+
+        void setHeat(double fraction, int visits, int recolors) {
+            heatHalo.setRadius(18 + 22 * fraction);
+            heatHalo.setFill(Color.RED.deriveColor(0, 1, 1, 0.15 + 0.5 * fraction));
+            tooltip.setText("Node " + id + ": " + visits + " visits, " + recolors + " recolors");
+        }
+
+        void clearHeat() {
+            heatHalo.setRadius(18);
+            heatHalo.setFill(Color.TRANSPARENT);
+            tooltip.setText("Node " + id);
         }
 
         void setColor(Color c) {
@@ -312,21 +671,6 @@ public class JavaFXSimulationVisualizer extends Application {
         }
     }
 
-    // --- JSON mapping classes ---
-    private static class Step {
-        int stepID;
-        int vCurId;
-        int activeColor;  // NEW: active color field
-        List<NodeState> nodeStates;
-    }
-
-    private static class NodeState {
-        int id;
-        int color;
-        int parent;
-        List<Integer> neighborIds;
-    }
-
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,147 @@
+package measuring;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the average moves per run of a configuration, for scheduling the expensive configurations first.
+ *
+ * Configurations found in a prior sweep output use its averageMoves; the others use a power law
+ * moves = e^b0 * n^b1 * density^b2 * c^b3 fitted in log space to all known averages, or n^2 * density while there
+ * are too few of them. Every completed configuration is added to the fit, and the ratio of observed to prior
+ * averages rescales the prior values. Moves do not depend on the machine, so the ratio stays 1 unless the prior
+ * sweep ran a different version of the algorithm or the generator, or a different move budget.
+ */
+public class CostModel {
+    private final Map<String, Double> prior = new HashMap<>();
+    // log n, log density, log c, log moves of every known average
+    private final List<double[]> samples = new ArrayList<>();
+    private double[] beta;
+    private double observedOnPrior;
+    private double priorOfObserved;
+
+    /** A model without prior data. */
+    public CostModel() {
+    }
+
+    /** Uses the measurements of a prior sweep output (Signature JSON); a missing file means no prior data. */
+    public static CostModel fromFile(Path signatureFile) {
+        CostModel model = new CostModel();
+        if (signatureFile == null || !Files.exists(signatureFile))
+            return model;
+        try (Reader r = Files.newBufferedReader(signatureFile)) {
+            PriorSignature s = new Gson().fromJson(r, PriorSignature.class);
+            if (s != null && s.measurements != null) {
+                for (PriorMeasurement m : s.measurements)
+                    model.addPrior(m.c, m.nodeCount, m.density, m.averageMoves);
+            }
+        } catch (IOException e) { throw new RuntimeException(e); }
+        model.fit();
+        return model;
+    }
+
+    // Only the fields needed from a prior sweep output
+    private static class PriorSignature {
+        List<PriorMeasurement> measurements;
+    }
+
+    private static class PriorMeasurement {
+        int c;
+        int nodeCount;
+        double density;
+        double averageMoves;
+    }
+
+    private void addPrior(int c, int n, double density, double averageMoves) {
+        if (averageMoves <= 0)
+            return;
+        prior.put(key(c, n, density), averageMoves);
+        addSample(c, n, density, averageMoves);
+    }
+
+    /** Expected average moves per run of the configuration. */
+    public synchronized double estimate(int c, int n, double density) {
+        Double p = prior.get(key(c, n, density));
+        if (p != null)
+            return p * priorScale();
+        if (beta == null)
+            return (double) n * n * Math.max(density, 1e-3);
+        return Math.exp(beta[0] + beta[1] * Math.log(n) + beta[2] * Math.log(Math.max(density, 1e-3))
+                + beta[3] * Math.log(c));
+    }
+
+    /** Refines the model with the average moves of a completed configuration. */
+    public synchronized void observe(int c, int n, double density, double averageMoves) {
+        if (averageMoves <= 0)
+            return;
+        Double p = prior.get(key(c, n, density));
+        if (p != null) {
+            observedOnPrior += averageMoves;
+            priorOfObserved += p;
+        }
+        addSample(c, n, density, averageMoves);
+        fit();
+    }
+
+    private double priorScale() {
+        return priorOfObserved > 0 ? observedOnPrior / priorOfObserved : 1.0;
+    }
+
+    private void addSample(int c, int n, double density, double averageMoves) {
+        samples.add(new double[]{Math.log(n), Math.log(Math.max(density, 1e-3)), Math.log(c), Math.log(averageMoves)});
+    }
+
+    // Least squares on the normal equations; needs more samples than coefficients and some spread in each input
+    private void fit() {
+        if (samples.size() < 8)
+            return;
+        double[][] a = new double[4][5];
+        for (double[] s : samples) {
+            double[] x = {1, s[0], s[1], s[2]};
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++)
+                    a[i][j] += x[i] * x[j];
+                a[i][4] += x[i] * s[3];
+            }
+        }
+        double[] solution = solve(a);
+        if (solution != null)
+            beta = solution;
+    }
+
+    // Gaussian elimination with partial pivoting on an augmented 4x5 matrix; null if singular
+    private static double[] solve(double[][] a) {
+        int n = a.length;
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < n; r++)
+                if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])) pivot = r;
+            if (Math.abs(a[pivot][col]) < 1e-9)
+                return null;
+            double[] tmp = a[col]; a[col] = a[pivot]; a[pivot] = tmp;
+            for (int r = 0; r < n; r++) {
+                if (r == col) continue;
+                double f = a[r][col] / a[col][col];
+                for (int k = col; k <= n; k++)
+                    a[r][k] -= f * a[col][k];
+            }
+        }
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++)
+            x[i] = a[i][n] / a[i][i];
+        return x;
+    }
+
+    // Densities are keyed to 1e-3 so that accumulated values like 0.30000000000000004 match 0.3
+    private static String key(int c, int n, double density) {
+        return c + ":" + n + ":" + Math.round(density * 1000);
+    }
+}
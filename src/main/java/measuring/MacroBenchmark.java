@@ -0,0 +1,255 @@
+package measuring;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import persistence.Recorder;
+import simulation.Node;
+import simulation.Rc;
+import simulation.RunBudget;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * End-to-end benchmark: a reduced fixed-seed Measurement sweep plus a fixed Rc trace recording.
+ * Writes a JSON report and compares it with a stored baseline; exits with status 1 on a regression and 2 when
+ * there is no baseline (unless --update-baseline is given).
+ *
+ * Every metric is the best of several iterations (after one warmup iteration) to damp run-to-run noise.
+ *
+ * Usage: MacroBenchmark [--baseline path] [--threshold fraction] [--iterations n] [--update-baseline]
+ */
+public class MacroBenchmark {
+    private static final long SEED = 42;
+    private static final int RUNSCOUNT = 20;
+    private static final int[] COLORS = {2, 5};
+    private static final int[] NODES = {10, 60, 110, 160};
+    private static final int[] DENSITY_TENTHS = {1, 5, 10};
+
+    // Fixed trace recording
+    private static final int TRACE_C = 5;
+    private static final int TRACE_NODES = 60;
+    private static final double TRACE_DENSITY = 0.2;
+
+    /** Benchmark result; serialized as the report and the baseline. */
+    public static class Report {
+        public String timestamp;
+        public String javaVersion;
+        public int processors;
+
+        public int configurations;
+        public long runs;
+        // Identical between reports unless the algorithm or the generator changed
+        public long moves;
+        public double sweepSeconds;
+        public double configurationsPerSecond;
+        public double runsPerSecond;
+        public double movesPerSecond;
+
+        public int traceSteps;
+        public long traceJsonBytes;
+        public double traceSeconds;
+        public double traceStepsPerSecond;
+
+        public long peakHeapBytes;
+        public long gcTimeMillis;
+        public long gcCount;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path baselinePath = Paths.get("benchmarks", "macro-baseline.json");
+        double threshold = 0.10;
+        int iterations = 3;
+        boolean updateBaseline = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--baseline": baselinePath = Paths.get(args[++i]); break;
+                case "--threshold": threshold = Double.parseDouble(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--update-baseline": updateBaseline = true; break;
+                default: throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+
+        // A missing baseline fails the gate, checked before spending the time on the benchmark
+        if (!updateBaseline && !Files.exists(baselinePath)) {
+            System.out.println("No baseline at " + baselinePath + ", run with --update-baseline to create it");
+            System.exit(2);
+        }
+
+        System.out.println("Warmup...");
+        run();
+        Report report = null;
+        for (int i = 1; i <= iterations; i++) {
+            System.out.println("Iteration " + i + "/" + iterations + "...");
+            report = best(report, run());
+        }
+
+        Gson g = new GsonBuilder().setPrettyPrinting().create();
+        String json = g.toJson(report);
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
+        Path out = Paths.get("target", "benchmarks", "macro-" + timestamp + ".json");
+        Files.createDirectories(out.getParent());
+        Files.write(out, json.getBytes());
+        System.out.println(json);
+        System.out.println("Report saved to " + out);
+
+        if (updateBaseline) {
+            if (baselinePath.getParent() != null)
+                Files.createDirectories(baselinePath.getParent());
+            Files.write(baselinePath, json.getBytes());
+            System.out.println("Baseline updated: " + baselinePath);
+            return;
+        }
+        Report baseline;
+        try (Reader r = Files.newBufferedReader(baselinePath)) {
+            baseline = g.fromJson(r, Report.class);
+        }
+        List<String> regressions = compare(baseline, report, threshold);
+        if (regressions.isEmpty()) {
+            System.out.println("No regression against " + baselinePath + " (threshold " + threshold * 100 + "%)");
+        } else {
+            regressions.forEach(r -> System.out.println("REGRESSION: " + r));
+            System.exit(1);
+        }
+    }
+
+    static Report run() throws IOException {
+        Report report = new Report();
+        report.timestamp = LocalDateTime.now().toString();
+        report.javaVersion = System.getProperty("java.version");
+        report.processors = Runtime.getRuntime().availableProcessors();
+
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            pool.resetPeakUsage();
+        long gcTimeBefore = gcTime();
+        long gcCountBefore = gcCount();
+
+        // Reduced sweep, same code path as Measurement.main
+        Random seeds = new Random(SEED);
+        List<SweepScheduler.Config> configs = new ArrayList<>();
+        for (int c : COLORS)
+            for (int n : NODES)
+                for (int tenths : DENSITY_TENTHS)
+                    configs.add(new SweepScheduler.Config(configs.size(), c, n, tenths / 10.0, seeds.nextLong()));
+        Measurement.Options options = new Measurement.Options();
+        options.progress = new SweepProgress();
+
+        long start = System.nanoTime();
+        Measurement.runSweep(configs, RUNSCOUNT, options, new CostModel(), report.processors);
+        report.sweepSeconds = (System.nanoTime() - start) / 1e9;
+
+        SweepProgress.Snapshot s = options.progress.snapshot();
+        report.configurations = configs.size();
+        report.runs = s.finishedRuns;
+        report.moves = s.moves;
+        report.configurationsPerSecond = report.configurations / report.sweepSeconds;
+        report.runsPerSecond = report.runs / report.sweepSeconds;
+        report.movesPerSecond = report.moves / report.sweepSeconds;
+
+        // Fixed trace recording, including writing it with Recorder.saveToFile to a temporary file
+        Path traceFile = Files.createTempFile("macro-trace", ".json");
+        start = System.nanoTime();
+        List<Node> nodes = Node.generateRandomConnectedGraph(TRACE_NODES, TRACE_DENSITY, TRACE_C, SEED);
+        Recorder recorder = new Recorder() {
+            @Override
+            public boolean debugOutput() {
+                return false;
+            }
+        };
+        new Rc(TRACE_C, recorder, RunBudget.UNLIMITED, SEED).traverse(nodes);
+        recorder.saveToFile(traceFile);
+        report.traceSeconds = (System.nanoTime() - start) / 1e9;
+        report.traceJsonBytes = Files.size(traceFile);
+        Files.delete(traceFile);
+        report.traceSteps = recorder.getSteps().size();
+        report.traceStepsPerSecond = report.traceSteps / report.traceSeconds;
+
+        report.peakHeapBytes = peakHeap();
+        report.gcTimeMillis = gcTime() - gcTimeBefore;
+        report.gcCount = gcCount() - gcCountBefore;
+        return report;
+    }
+
+    // Fastest time and lowest resource usage of both reports, per metric
+    private static Report best(Report a, Report b) {
+        if (a == null)
+            return b;
+        if (b.sweepSeconds < a.sweepSeconds) {
+            a.sweepSeconds = b.sweepSeconds;
+            a.configurationsPerSecond = b.configurationsPerSecond;
+            a.runsPerSecond = b.runsPerSecond;
+            a.movesPerSecond = b.movesPerSecond;
+        }
+        if (b.traceSeconds < a.traceSeconds) {
+            a.traceSeconds = b.traceSeconds;
+            a.traceStepsPerSecond = b.traceStepsPerSecond;
+        }
+        a.peakHeapBytes = Math.min(a.peakHeapBytes, b.peakHeapBytes);
+        a.gcTimeMillis = Math.min(a.gcTimeMillis, b.gcTimeMillis);
+        a.gcCount = Math.min(a.gcCount, b.gcCount);
+        return a;
+    }
+
+    /** Human-readable regressions of current against baseline; empty if there are none. */
+    static List<String> compare(Report baseline, Report current, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        lowerIsWorse(regressions, "configurationsPerSecond", baseline.configurationsPerSecond,
+                current.configurationsPerSecond, threshold);
+        lowerIsWorse(regressions, "runsPerSecond", baseline.runsPerSecond, current.runsPerSecond, threshold);
+        lowerIsWorse(regressions, "movesPerSecond", baseline.movesPerSecond, current.movesPerSecond, threshold);
+        lowerIsWorse(regressions, "traceStepsPerSecond", baseline.traceStepsPerSecond,
+                current.traceStepsPerSecond, threshold);
+        if (baseline.peakHeapBytes > 0 && current.peakHeapBytes > baseline.peakHeapBytes * (1 + threshold))
+            regressions.add("peakHeapBytes " + baseline.peakHeapBytes + " -> " + current.peakHeapBytes);
+        if (baseline.moves != current.moves)
+            System.out.println("Note: total moves changed (" + baseline.moves + " -> " + current.moves +
+                    "), the algorithm or the generator no longer matches the baseline");
+        if (baseline.processors != current.processors)
+            System.out.println("Note: baseline was measured on " + baseline.processors + " processors, this run on " +
+                    current.processors);
+        return regressions;
+    }
+
+    private static void lowerIsWorse(List<String> regressions, String name, double baseline, double current,
+                                     double threshold) {
+        if (baseline > 0 && current < baseline * (1 - threshold))
+            regressions.add(String.format("%s %.1f -> %.1f (%.1f%%)", name, baseline, current,
+                    (current / baseline - 1) * 100));
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        return peak;
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionTime());
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionCount());
+        return total;
+    }
+}
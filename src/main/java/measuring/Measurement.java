@@ -2,59 +2,219 @@ package measuring;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import simulation.DensityLadder;
 import simulation.Node;
 import simulation.Rc;
+import simulation.RunBudget;
+import simulation.TraversalCounters;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Measurement {
+
+    /** Default per-run move budget of a sweep, overridden with -Drc.maxRunMoves. */
+    public static final long DEFAULT_MAX_RUN_MOVES = 50_000_000L;
+
+    /** Sweep-wide settings of a Measurement; watchdog and progress may be null. */
+    public static class Options {
+        public RunBudget budget = RunBudget.UNLIMITED;
+        public Watchdog watchdog;
+        public SweepProgress progress;
+        // Collects TraversalCounters in every run and stores their averages
+        public boolean collectCounters;
+    }
+
     int c;
     int nodeCount;
     double density;
     int runsCount;
+    // Every run of this configuration is reproducible from this seed, see graphSeed/runSeed
+    long seed;
+    // Run budget of the sweep (RunBudget), needed to replay a censored run up to the same point; 0 = no limit
+    long maxRunMoves;
+    long maxRunMillis;
+
+    // Averages are taken over the completed runs only; censored runs are counted separately
+    int completedRuns;
+    int censoredRuns;
+    Map<String, Integer> censorReasons = new TreeMap<>();
+    // Runs stopped by the wall time limit; their cutoff depends on the machine, so a replay does not stop at the
+    // same step. Null when there are none.
+    List<Integer> wallTimeCensoredRuns;
+    // Runs the watchdog flagged as much slower than the other runs of this configuration
+    int flaggedRuns;
 
     double averageMoves;
     double averageColorChanges;
     double averageIterations;
 
+    // Only with Options.collectCounters, averaged over the completed runs. Every run uses a different graph, so
+    // apart from the start node (node 0 in every run) counters are only aggregated by structure, here the degree.
+    Double averageStartNodeVisits;
+    Double averageStartNodeRecolors;
+    // Index is the node degree; 0 for degrees that did not occur
+    double[] averageVisitsByDegree;
+
+    // Set on measurements produced by a density ladder: the runs of all densities of one n share their graphs
+    Boolean ladder;
+
+    // Accumulated over the runs, not serialized
+    private transient Options options;
+    private transient long totalRunNanos;
+    private transient long totalMoves;
+    private transient long totalColorChanges;
+    private transient long totalIterations;
+    private transient long startVisits, startRecolors;
+    private transient long[] visitsByDegree, nodesByDegree;
+
     public Measurement(int c, int nodeCount, double density, int runsCount) {
+        this(c, nodeCount, density, runsCount, new Random().nextLong(), new Options());
+    }
+
+    public Measurement(int c, int nodeCount, double density, int runsCount, long seed, Options options) {
+        this(c, nodeCount, density, runsCount, seed, options, false);
+
+        for (int i = 0; i < runsCount; i++) {
+            List<Node> nodes = Node.generateRandomConnectedGraph(nodeCount, density, c, graphSeed(seed, i));
+            run(nodes, i);
+        }
+        finish();
+    }
+
+    private Measurement(int c, int nodeCount, double density, int runsCount, long seed, Options options,
+                        boolean ladder) {
         this.c = c;
         this.nodeCount = nodeCount;
         this.density = density;
         this.runsCount = runsCount;
+        this.seed = seed;
+        this.maxRunMoves = options.budget.maxMoves == Long.MAX_VALUE ? 0 : options.budget.maxMoves;
+        this.maxRunMillis = options.budget.maxWallTimeMillis;
+        this.options = options;
+        this.ladder = ladder ? Boolean.TRUE : null;
+        if (options.collectCounters) {
+            visitsByDegree = new long[nodeCount];
+            nodesByDegree = new long[nodeCount];
+        }
+    }
 
-        List<Metrics> runs = new ArrayList<>();
-        Rc rc = new Rc(c, null);
+    /**
+     * Density ladder mode: for each run, one graph per n is grown through the densities in ascending order
+     * (see DensityLadder), and Rc runs on it at every density with the same run seed. Returns one measurement
+     * per density, in ascending order of density. The seeds of the ladder runs do not reproduce through ReplaySpec.
+     */
+    public static List<Measurement> ladder(int c, int nodeCount, double[] densities, int runsCount, long seed,
+                                           Options options) {
+        double[] sorted = densities.clone();
+        Arrays.sort(sorted);
+        Measurement[] result = new Measurement[sorted.length];
+        for (int j = 0; j < sorted.length; j++)
+            result[j] = new Measurement(c, nodeCount, sorted[j], runsCount, seed, options, true);
 
         for (int i = 0; i < runsCount; i++) {
-            List<Node> nodes = Node.generateRandomConnectedGraph(nodeCount, density, c);
+            DensityLadder graphs = new DensityLadder(nodeCount, sorted[sorted.length - 1], c, graphSeed(seed, i));
+            for (int j = 0; j < sorted.length; j++)
+                result[j].run(graphs.growTo(sorted[j]), i);
+        }
+        for (Measurement m : result)
+            m.finish();
+        return Arrays.asList(result);
+    }
+
+    private void run(List<Node> nodes, int i) {
+        Watchdog watchdog = options.watchdog;
+        SweepProgress progress = options.progress;
+        Rc rc = new Rc(c, null, options.budget, runSeed(seed, i));
+        TraversalCounters counters = options.collectCounters ? TraversalCounters.forNodes(nodes) : null;
+        rc.setCounters(counters);
+
+        // Expect roughly the average duration of the runs of this configuration that already finished
+        long expectedNanos = completedRuns > 0 ? totalRunNanos / completedRuns : 0;
+        Watchdog.Run ticket = watchdog == null ? null
+                : watchdog.start("c=" + c + " n=" + nodeCount + " d=" + density + " run " + i, expectedNanos);
+        long start = System.nanoTime();
+
+        Metrics m = rc.traverse(nodes);
+        if (progress != null)
+            progress.runFinished(m);
 
-            Metrics m = rc.traverse(nodes);
-            runs.add(m);
+        if (ticket != null && watchdog.finish(ticket))
+            flaggedRuns++;
+        if (m.censored) {
+            censoredRuns++;
+            censorReasons.merge(m.censorReason, 1, Integer::sum);
+            if ("wallTime".equals(m.censorReason)) {
+                if (wallTimeCensoredRuns == null)
+                    wallTimeCensoredRuns = new ArrayList<>();
+                wallTimeCensoredRuns.add(i);
+            }
+            return;
         }
 
-        int totalMoves = 0;
-        int totalColorChanges = 0;
-        int totalIterations = 0;
+        completedRuns++;
+        totalRunNanos += System.nanoTime() - start;
+        totalMoves += m.moves;
+        totalColorChanges += m.colorChanges;
+        totalIterations += m.iterations;
+        if (counters != null) {
+            startVisits += counters.nodeVisits[0];
+            startRecolors += counters.nodeRecolors[0];
+            for (int v = 0; v < nodeCount; v++) {
+                visitsByDegree[counters.degree(v)] += counters.nodeVisits[v];
+                nodesByDegree[counters.degree(v)]++;
+            }
+        }
+    }
 
-        for (Metrics m : runs) {
-            totalMoves += m.moves;
-            totalColorChanges += m.colorChanges;
-            totalIterations += m.iterations;
+    private void finish() {
+        if (completedRuns > 0) {
+            averageMoves = (double) totalMoves / completedRuns;
+            averageColorChanges = (double) totalColorChanges / completedRuns;
+            averageIterations = (double) totalIterations / completedRuns;
         }
 
-        averageMoves = (double) totalMoves / runsCount;
-        averageColorChanges = (double) totalColorChanges / runsCount;
-        averageIterations = (double) totalIterations / runsCount;
+        if (options.collectCounters) {
+            if (completedRuns > 0) {
+                averageStartNodeVisits = (double) startVisits / completedRuns;
+                averageStartNodeRecolors = (double) startRecolors / completedRuns;
+            }
+            averageVisitsByDegree = new double[nodeCount];
+            for (int v = 0; v < nodeCount && completedRuns > 0; v++) {
+                if (nodesByDegree[v] > 0)
+                    averageVisitsByDegree[v] = (double) visitsByDegree[v] / nodesByDegree[v];
+            }
+        }
+    }
+
+    /** Seed of the graph of the given run of a measurement with the given seed. */
+    public static long graphSeed(long seed, int run) {
+        return mix(seed + 2L * run);
+    }
+
+    /** Seed of the Rc instance of the given run of a measurement with the given seed. */
+    public static long runSeed(long seed, int run) {
+        return mix(seed + 2L * run + 1);
+    }
+
+    // SplitMix64 finalizer: neighbouring inputs give unrelated seeds
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
     }
 
     public synchronized void saveToFile() {
@@ -71,41 +231,61 @@ public class Measurement {
         } catch (IOException e) { throw new RuntimeException(e); }
     }
 
-    public static void main(String[] args) {
-        int MAX_COLORS = 10;
-        int MAX_NODES = 500;
-        int NODE_STEP = 50;
-        int RUNSCOUNT = 100;
+    /**
+     * Runs the configurations on the given number of worker threads, largest expected cost first,
+     * and returns the measurements in configuration order.
+     */
+    public static List<Measurement> runSweep(List<SweepScheduler.Config> configs, int runsCount, Options options,
+                                             CostModel costModel, int threads) {
+        SweepScheduler scheduler = new SweepScheduler(costModel, configs);
+        SweepProgress progress = options.progress;
+        if (progress != null) {
+            progress.setTotalConfigurations(configs.size());
+            progress.setTotalExpectedCost(scheduler.totalPlannedCost());
+            progress.setQueueDepth(scheduler::remaining);
+        }
 
-        int threads = Runtime.getRuntime().availableProcessors();
-        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        threads = Math.max(1, threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
 
-        List<Future<Measurement>> futures = new ArrayList<>();
-        int nodeValuesCnt = 0;
-        for (int c = 2; c <= MAX_COLORS; c++) {
-            for (int n = 10; n <= MAX_NODES; n += NODE_STEP) {
-                for (double d = 0.1; d <= 1.0; d += 0.1) {
-                    final int cc = c;
-                    final int nn = n;
-                    final double dd = d;
+        // Every worker keeps taking the most expensive remaining configuration
+        int outputs = 0;
+        for (SweepScheduler.Config cfg : configs)
+            outputs = Math.max(outputs, cfg.order + cfg.size());
+        Measurement[] results = new Measurement[outputs];
+        AtomicInteger started = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                SweepScheduler.Config cfg;
+                while ((cfg = scheduler.next()) != null) {
                     // Only for progress logging
-                    final int nodeValuesCntFinal = nodeValuesCnt;
-                    futures.add(pool.submit(() -> {
-                        if (nodeValuesCntFinal % 10 == 0 && dd == 0.1)
-                            System.out.println("Starting measurement c=" + cc + " n=" + nn + " d=" + dd);
-                        return new Measurement(cc, nn, dd, RUNSCOUNT);
-                    }));
+                    if (started.getAndIncrement() % 50 == 0)
+                        System.out.println("Starting measurement c=" + cfg.c + " n=" + cfg.nodeCount +
+                                " d=" + cfg.density + " (" + scheduler.remaining() + " left)");
+                    if (progress != null)
+                        progress.configurationStarted();
+                    List<Measurement> done;
+                    try {
+                        done = cfg.densities == null
+                                ? List.of(new Measurement(cfg.c, cfg.nodeCount, cfg.density, runsCount, cfg.seed,
+                                        options))
+                                : ladder(cfg.c, cfg.nodeCount, cfg.densities, runsCount, cfg.seed, options);
+                    } finally {
+                        if (progress != null)
+                            progress.configurationFinished(scheduler.plannedCost(cfg));
+                    }
+                    for (int j = 0; j < done.size(); j++)
+                        results[cfg.order + j] = done.get(j);
+                    scheduler.completed(cfg, done);
                 }
-                nodeValuesCnt++;
-            }
+            }));
         }
 
-        List<Measurement> measurements = new ArrayList<>();
-
         // wait for all tasks to finish and surface exceptions
         try {
-            for (Future<Measurement> f : futures) {
-                measurements.add(f.get());
+            for (Future<?> f : futures) {
+                f.get();
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -113,9 +293,79 @@ public class Measurement {
         } catch (ExecutionException e) {
             throw new RuntimeException(e.getCause());
         } finally {
-            pool.shutdown();
+            pool.shutdownNow();
         }
 
+        return Arrays.asList(results);
+    }
+
+    public static void main(String[] args) {
+        int MAX_COLORS = 10;
+        int MAX_NODES = 500;
+        int NODE_STEP = 50;
+        int RUNSCOUNT = 100;
+        Options options = new Options();
+        // Per-run budget; the largest configurations of measurement-upto-500 average ~400k moves per run
+        options.budget = new RunBudget(
+                Long.getLong("rc.maxRunMoves", DEFAULT_MAX_RUN_MOVES),
+                Long.getLong("rc.maxRunMillis", 10 * 60 * 1000L));
+        options.watchdog = new Watchdog(10.0, 30_000, 5_000);
+        // Start-node and visits-by-degree counters, enable with -Drc.counters=true
+        options.collectCounters = Boolean.getBoolean("rc.counters");
+        // Configuration seeds are drawn in output order, so the whole sweep is reproducible from this seed
+        long SWEEP_SEED = Long.getLong("rc.seed", System.nanoTime());
+        Random seeds = new Random(SWEEP_SEED);
+        System.out.println("Sweep seed: " + SWEEP_SEED);
+
+        // Configurations in output order; they are run largest-expected-cost first
+        // Densities are counted in tenths, so they print as 0.3 rather than 0.30000000000000004
+        double[] densities = new double[10];
+        for (int tenths = 1; tenths <= 10; tenths++)
+            densities[tenths - 1] = tenths / 10.0;
+        // Ladder mode grows one graph per (c, n) and run through all densities, enable with -Drc.ladder=true
+        boolean ladder = Boolean.getBoolean("rc.ladder");
+        List<SweepScheduler.Config> configs = new ArrayList<>();
+        int order = 0;
+        for (int c = 2; c <= MAX_COLORS; c++) {
+            for (int n = 10; n <= MAX_NODES; n += NODE_STEP) {
+                if (ladder) {
+                    configs.add(new SweepScheduler.Config(order, c, n, densities, seeds.nextLong()));
+                    order += densities.length;
+                    continue;
+                }
+                for (double d : densities) {
+                    configs.add(new SweepScheduler.Config(order++, c, n, d, seeds.nextLong()));
+                }
+            }
+        }
+        // Prior averages for the cost model, override with -Drc.costPrior=<sweep output>
+        CostModel costModel = CostModel.fromFile(
+                Paths.get(System.getProperty("rc.costPrior", "measurements/measurement-upto-500.json")));
+
+        // Optional live metrics endpoint, enabled with -Drc.metrics.port=<port>
+        options.progress = new SweepProgress();
+        MetricsServer metricsServer = null;
+        Integer metricsPort = Integer.getInteger("rc.metrics.port");
+        if (metricsPort != null) {
+            try {
+                metricsServer = new MetricsServer(metricsPort, options.progress);
+                System.out.println("Metrics on http://127.0.0.1:" + metricsServer.port() + "/metrics");
+            } catch (IOException e) { throw new RuntimeException(e); }
+        }
+
+        List<Measurement> measurements;
+        try {
+            measurements = runSweep(configs, RUNSCOUNT, options, costModel, Runtime.getRuntime().availableProcessors());
+        } finally {
+            options.watchdog.close();
+            if (metricsServer != null)
+                metricsServer.close();
+        }
+
+        int censored = measurements.stream().mapToInt(m -> m.censoredRuns).sum();
+        if (censored > 0)
+            System.out.println(censored + " runs were censored by the run budget");
+
         try {
             Path out = Paths.get("measurements", "measurement.json");
 
@@ -1,7 +1,12 @@
 package measuring;
 
 public class Metrics {
-    public int moves;
+    public long moves;
     public int colorChanges;
     public int iterations;
+
+    // Set when the run was stopped by its budget before reaching the stopping criterion
+    public boolean censored;
+    // "moves", "wallTime", "outerIterations" or "interrupted"; null for terminated runs
+    public String censorReason;
 }
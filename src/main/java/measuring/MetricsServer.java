@@ -0,0 +1,99 @@
+package measuring;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP endpoint exposing {@link SweepProgress}: {@code /metrics} in Prometheus text format and
+ * {@code /metrics.json} as JSON. Binds to localhost only.
+ */
+public class MetricsServer implements AutoCloseable {
+    private final HttpServer server;
+    private final SweepProgress progress;
+
+    public MetricsServer(int port, SweepProgress progress) throws IOException {
+        this.progress = progress;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/metrics", ex -> respond(ex, "text/plain; version=0.0.4", prometheus()));
+        server.createContext("/metrics.json", ex -> respond(ex, "application/json", json()));
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-server");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private String json() {
+        Gson g = new GsonBuilder().setPrettyPrinting().create();
+        return g.toJson(progress.snapshot());
+    }
+
+    private String prometheus() {
+        SweepProgress.Snapshot s = progress.snapshot();
+        StringBuilder sb = new StringBuilder();
+        gauge(sb, "rc_sweep_configurations", "Configurations in the sweep", s.totalConfigurations);
+        counter(sb, "rc_sweep_configurations_completed_total", "Configurations completed", s.completedConfigurations);
+        counter(sb, "rc_sweep_runs_finished_total", "Rc runs finished, censored runs included", s.finishedRuns);
+        counter(sb, "rc_sweep_runs_censored_total", "Rc runs stopped by their budget", s.censoredRuns);
+        counter(sb, "rc_sweep_moves_total", "Agent moves over all runs", s.moves);
+        gauge(sb, "rc_sweep_runs_per_second", "Runs per second since the start of the sweep", s.runsPerSecond);
+        gauge(sb, "rc_sweep_moves_per_second", "Moves per second since the start of the sweep", s.movesPerSecond);
+        gauge(sb, "rc_sweep_queue_depth", "Configurations waiting for a worker", s.queueDepth);
+        gauge(sb, "rc_sweep_heap_used_bytes", "Used heap", s.heapUsedBytes);
+        gauge(sb, "rc_sweep_heap_max_bytes", "Maximum heap", s.heapMaxBytes);
+        gauge(sb, "rc_sweep_fraction_done", "Share of the expected cost of the sweep completed", s.fractionDone);
+        gauge(sb, "rc_sweep_eta_seconds", "Estimated time to completion, -1 if unknown", s.etaSeconds);
+        sb.append("# HELP rc_sweep_worker_utilization Fraction of the sweep each worker spent busy\n");
+        sb.append("# TYPE rc_sweep_worker_utilization gauge\n");
+        for (Map.Entry<String, Double> e : s.workerUtilization.entrySet())
+            sb.append("rc_sweep_worker_utilization{worker=\"").append(e.getKey()).append("\"} ")
+                    .append(e.getValue()).append('\n');
+        return sb.toString();
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, double value) {
+        metric(sb, name, help, "gauge", value);
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, long value) {
+        metric(sb, name, help, "gauge", value);
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, long value) {
+        metric(sb, name, help, "counter", value);
+    }
+
+    private static void metric(StringBuilder sb, String name, String help, String type, Number value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void respond(HttpExchange ex, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,135 @@
+package measuring;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Live counters of a Measurement sweep, updated by the worker threads and read by {@link MetricsServer}.
+ * Updates are a few atomic increments per run, so they are cheap enough to leave on.
+ */
+public class SweepProgress {
+
+    /** Busy time of one worker thread. */
+    static class Worker {
+        final LongAdder busyNanos = new LongAdder();
+        // Start of the configuration in progress, 0 when idle
+        volatile long taskStartNanos;
+    }
+
+    /** Point-in-time view of the counters, serialized as the JSON response. */
+    public static class Snapshot {
+        public int totalConfigurations;
+        public int completedConfigurations;
+        // Runs that have returned, censored ones included (Measurement.completedRuns excludes them)
+        public long finishedRuns;
+        public long censoredRuns;
+        public long moves;
+        public double elapsedSeconds;
+        public double runsPerSecond;
+        public double movesPerSecond;
+        public int queueDepth;
+        public long heapUsedBytes;
+        public long heapMaxBytes;
+        // Share of the sweep's expected cost in completed configurations, see SweepScheduler.plannedCost
+        public double fractionDone;
+        // Extrapolated from fractionDone; -1 until the first configuration has completed
+        public double etaSeconds;
+        public Map<String, Double> workerUtilization;
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger totalConfigurations = new AtomicInteger();
+    private final AtomicInteger completedConfigurations = new AtomicInteger();
+    private final LongAdder finishedRuns = new LongAdder();
+    private final LongAdder censoredRuns = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final DoubleAdder completedCost = new DoubleAdder();
+    private volatile double totalCost;
+    private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+    private volatile IntSupplier queueDepth = () -> 0;
+
+    public void setTotalConfigurations(int total) {
+        totalConfigurations.set(total);
+    }
+
+    /**
+     * Total expected cost of the sweep. Configurations differ in cost by orders of magnitude and the expensive
+     * ones run first, so progress is measured in expected cost rather than in configurations.
+     */
+    public void setTotalExpectedCost(double total) {
+        totalCost = total;
+    }
+
+    public void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /** Called by a worker before it starts a configuration. */
+    public void configurationStarted() {
+        worker().taskStartNanos = System.nanoTime();
+    }
+
+    /** Called by a worker after it finished a configuration of the given expected cost. */
+    public void configurationFinished(double expectedCost) {
+        Worker w = worker();
+        w.busyNanos.add(System.nanoTime() - w.taskStartNanos);
+        w.taskStartNanos = 0;
+        completedCost.add(expectedCost);
+        completedConfigurations.incrementAndGet();
+    }
+
+    public void runFinished(Metrics m) {
+        finishedRuns.increment();
+        moves.add(m.moves);
+        if (m.censored)
+            censoredRuns.increment();
+    }
+
+    private Worker worker() {
+        return workers.computeIfAbsent(Thread.currentThread().getName(), k -> new Worker());
+    }
+
+    public Snapshot snapshot() {
+        long now = System.nanoTime();
+        Snapshot s = new Snapshot();
+        s.totalConfigurations = totalConfigurations.get();
+        s.completedConfigurations = completedConfigurations.get();
+        s.finishedRuns = finishedRuns.sum();
+        s.censoredRuns = censoredRuns.sum();
+        s.moves = moves.sum();
+        s.elapsedSeconds = (now - startNanos) / 1e9;
+        s.runsPerSecond = s.elapsedSeconds > 0 ? s.finishedRuns / s.elapsedSeconds : 0;
+        s.movesPerSecond = s.elapsedSeconds > 0 ? s.moves / s.elapsedSeconds : 0;
+        s.queueDepth = queueDepth.getAsInt();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        s.heapUsedBytes = heap.getUsed();
+        s.heapMaxBytes = heap.getMax();
+        // Without cost estimates every configuration counts the same
+        double total = totalCost;
+        double done = completedCost.sum();
+        if (total > 0)
+            s.fractionDone = Math.min(1.0, done / total);
+        else if (s.totalConfigurations > 0)
+            s.fractionDone = (double) s.completedConfigurations / s.totalConfigurations;
+        s.etaSeconds = s.completedConfigurations == 0 || s.fractionDone == 0 ? -1
+                : s.elapsedSeconds * (1 - s.fractionDone) / s.fractionDone;
+
+        s.workerUtilization = new LinkedHashMap<>();
+        for (Map.Entry<String, Worker> e : new TreeMap<>(workers).entrySet()) {
+            long busy = e.getValue().busyNanos.sum();
+            long taskStart = e.getValue().taskStartNanos;
+            if (taskStart != 0)
+                busy += now - taskStart;
+            s.workerUtilization.put(e.getKey(), Math.min(1.0, busy / (double) (now - startNanos)));
+        }
+        return s;
+    }
+}
@@ -0,0 +1,127 @@
+package measuring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out the configurations of a sweep largest-expected-cost first, so that the most expensive ones do not
+ * end up last and set the makespan. Costs are re-estimated from the {@link CostModel} on every pick, so
+ * completed configurations immediately improve the order of the remaining ones.
+ */
+public class SweepScheduler {
+
+    /**
+     * One configuration of the sweep; order is its position in the output. A ladder configuration measures all
+     * of its densities on one growing graph per run (see {@link Measurement#ladder}) and occupies
+     * densities.length consecutive output positions; density is then its largest density.
+     */
+    public static class Config {
+        public final int order;
+        public final int c;
+        public final int nodeCount;
+        public final double density;
+        public final long seed;
+        // null for a single-density configuration
+        public final double[] densities;
+
+        public Config(int order, int c, int nodeCount, double density, long seed) {
+            this.order = order;
+            this.c = c;
+            this.nodeCount = nodeCount;
+            this.density = density;
+            this.seed = seed;
+            this.densities = null;
+        }
+
+        public Config(int order, int c, int nodeCount, double[] densities, long seed) {
+            this.order = order;
+            this.c = c;
+            this.nodeCount = nodeCount;
+            this.densities = densities.clone();
+            Arrays.sort(this.densities);
+            this.density = this.densities[this.densities.length - 1];
+            this.seed = seed;
+        }
+
+        /** Number of measurements this configuration produces. */
+        public int size() {
+            return densities == null ? 1 : densities.length;
+        }
+    }
+
+    private final CostModel model;
+    private final List<Config> pending;
+    // Expected cost of every configuration when the sweep started, the basis of the progress estimate
+    private final Map<Config, Double> plannedCost = new IdentityHashMap<>();
+    private final double totalPlannedCost;
+
+    public SweepScheduler(CostModel model, List<Config> configs) {
+        this.model = model;
+        this.pending = new ArrayList<>(configs);
+        double total = 0;
+        for (Config config : configs) {
+            double cost = expectedCost(config);
+            plannedCost.put(config, cost);
+            total += cost;
+        }
+        totalPlannedCost = total;
+    }
+
+    /** Sum of the expected costs of all configurations, as estimated when the sweep started. */
+    public double totalPlannedCost() {
+        return totalPlannedCost;
+    }
+
+    /** Expected cost of the configuration as estimated when the sweep started, comparable to the total. */
+    public double plannedCost(Config config) {
+        return plannedCost.getOrDefault(config, 0.0);
+    }
+
+    /** The pending configuration with the highest expected cost, or null when none are left. */
+    public synchronized Config next() {
+        int best = -1;
+        double bestCost = -1;
+        for (int i = 0; i < pending.size(); i++) {
+            double cost = expectedCost(pending.get(i));
+            if (cost > bestCost) {
+                bestCost = cost;
+                best = i;
+            }
+        }
+        if (best < 0)
+            return null;
+        // Swap-remove, the order of pending does not matter
+        Config next = pending.get(best);
+        pending.set(best, pending.get(pending.size() - 1));
+        pending.remove(pending.size() - 1);
+        return next;
+    }
+
+    /** Feeds the measurements of a finished configuration back into the cost model. */
+    public void completed(Config config, List<Measurement> measurements) {
+        for (Measurement m : measurements) {
+            if (m.completedRuns > 0)
+                model.observe(m.c, m.nodeCount, m.density, m.averageMoves);
+        }
+    }
+
+    public synchronized int remaining() {
+        return pending.size();
+    }
+
+    // Moves per run plus the edges generated per run, both scale the work of a run. A ladder generates only
+    // the edges of its densest graph, but runs Rc at every density.
+    private double expectedCost(Config config) {
+        double n = config.nodeCount;
+        double edges = Math.max(n - 1, config.density * n * (n - 1) / 2);
+        if (config.densities == null)
+            return model.estimate(config.c, config.nodeCount, config.density) + edges;
+        double moves = 0;
+        for (double d : config.densities)
+            moves += model.estimate(config.c, config.nodeCount, d);
+        return moves + edges;
+    }
+}
@@ -0,0 +1,90 @@
+package measuring;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically scans the runs in progress and flags the ones that take much longer than expected,
+ * so that stragglers in a sweep are visible while it is still running.
+ */
+public class Watchdog implements AutoCloseable {
+
+    public static class Run {
+        final String label;
+        final long startNanos;
+        final long expectedNanos;
+        volatile boolean flagged;
+
+        Run(String label, long startNanos, long expectedNanos) {
+            this.label = label;
+            this.startNanos = startNanos;
+            this.expectedNanos = expectedNanos;
+        }
+    }
+
+    private final double slowFactor;
+    private final long minFlagNanos;
+    private final Map<Thread, Run> active = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scanner;
+
+    /**
+     * @param slowFactor         a run is flagged when it takes longer than slowFactor times its expected duration
+     * @param minFlagMillis      runs shorter than this are never flagged (avoids noise on tiny configurations)
+     * @param scanIntervalMillis how often the active runs are inspected
+     */
+    public Watchdog(double slowFactor, long minFlagMillis, long scanIntervalMillis) {
+        if (slowFactor <= 1.0)
+            throw new IllegalArgumentException("slowFactor must be > 1");
+        this.slowFactor = slowFactor;
+        this.minFlagNanos = TimeUnit.MILLISECONDS.toNanos(minFlagMillis);
+        this.scanner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        scanner.scheduleAtFixedRate(this::scan, scanIntervalMillis, scanIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a run on the calling thread. An expectedNanos of 0 means there is no estimate yet,
+     * in which case only the minimum duration applies.
+     */
+    public Run start(String label, long expectedNanos) {
+        Run run = new Run(label, System.nanoTime(), expectedNanos);
+        active.put(Thread.currentThread(), run);
+        return run;
+    }
+
+    /** Unregisters the run and returns whether it was flagged while in progress. */
+    public boolean finish(Run run) {
+        active.remove(Thread.currentThread(), run);
+        return run.flagged;
+    }
+
+    private void scan() {
+        long now = System.nanoTime();
+        for (Run run : active.values()) {
+            if (run.flagged)
+                continue;
+            long elapsed = now - run.startNanos;
+            long limit = Math.max(minFlagNanos, (long) (run.expectedNanos * slowFactor));
+            if (elapsed > limit) {
+                run.flagged = true;
+                System.out.println("[watchdog] " + run.label + " running for " + formatMillis(elapsed) +
+                        (run.expectedNanos > 0 ? ", expected ~" + formatMillis(run.expectedNanos) : ""));
+            }
+        }
+    }
+
+    private static String formatMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+    }
+
+    @Override
+    public void close() {
+        scanner.shutdownNow();
+    }
+}
@@ -0,0 +1,241 @@
+package persistence;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link Trace} over a trace file written by {@link Recorder}, read with the Jackson streaming parser instead of
+ * materializing every {@link Recorder.Step}. The topology is taken from step 0 only; the neighbor lists that the
+ * Recorder repeats in every later step are checked against it while parsing, but not stored. Node states are
+ * diffed against the previous step while parsing and kept in a {@link DeltaStateStore}.
+ */
+public class CompactTrace implements Trace {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private int[] ids;
+    private int[][] neighbors;
+    private DeltaStateStore states;
+    private int[] stepId = new int[1024];
+
+    private CompactTrace() {
+    }
+
+    public static CompactTrace load(Path file) {
+        try (Reader r = Files.newBufferedReader(file)) {
+            return load(r);
+        } catch (IOException e) { throw new RuntimeException(e); }
+    }
+
+    /** Reads a JSON array of steps as written by {@link Recorder#saveToFile}. */
+    public static CompactTrace load(Reader r) throws IOException {
+        CompactTrace trace = new CompactTrace();
+        try (JsonParser p = JSON.createParser(r)) {
+            if (p.nextToken() != JsonToken.START_ARRAY)
+                throw new IllegalArgumentException("Not a recorded trace");
+            Loader loader = trace.new Loader();
+            while (p.nextToken() == JsonToken.START_OBJECT)
+                loader.readStep(p);
+        }
+        if (trace.states == null || trace.states.stepCount() == 0)
+            throw new IllegalArgumentException("Trace has no steps");
+        return trace;
+    }
+
+    /** Parses one step at a time into scratch arrays and stores what changed since the previous step. */
+    private class Loader {
+        // Node ids and neighbor ids of step 0; later steps must repeat them in the same order
+        private int[] expectedIds = new int[64];
+        private int[][] neighborIds = new int[64][];
+        private final Map<Integer, Integer> indexOf = new HashMap<>();
+        private int[] colors = new int[64];
+        private int[] parents = new int[64];
+        private int[] nextColors = new int[64];
+        private int[] nextParents = new int[64];
+        private int[] scratch = new int[16];
+
+        void readStep(JsonParser p) throws IOException {
+            int step = states == null ? 0 : states.stepCount();
+            int id = step;
+            int curId = -1;
+            int active = 0;
+            int nodes = -1;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "stepID" -> id = p.getIntValue();
+                    case "vCurId" -> curId = p.getIntValue();
+                    case "activeColor" -> active = p.getIntValue();
+                    case "nodeStates" -> nodes = readNodeStates(p, step);
+                    default -> p.skipChildren();
+                }
+            }
+            if (nodes < 0)
+                throw new IllegalArgumentException("Step " + id + " has no nodeStates");
+            if (step == 0)
+                initTopology(nodes);
+            else if (nodes != ids.length)
+                throw new IllegalArgumentException("Step " + id + " has " + nodes + " nodes, step 0 has " + ids.length);
+
+            int cur = indexOf.getOrDefault(curId, -1);
+            boolean recoloredCur = step > 0 && cur >= 0 && nextColors[cur] != colors[cur];
+            for (int i = 0; i < nodes; i++) {
+                if (step == 0 || nextColors[i] != colors[i] || nextParents[i] != parents[i])
+                    states.appendChange(i, nextColors[i], nextParents[i]);
+            }
+            int[] t = colors; colors = nextColors; nextColors = t;
+            t = parents; parents = nextParents; nextParents = t;
+
+            if (step == stepId.length)
+                stepId = Arrays.copyOf(stepId, (int) Math.min(Integer.MAX_VALUE - 1L, step * 2L));
+            stepId[step] = id;
+            states.endStep(cur, active, recoloredCur, colors, parents);
+        }
+
+        // Returns the number of nodes of the step
+        private int readNodeStates(JsonParser p, int step) throws IOException {
+            if (p.currentToken() != JsonToken.START_ARRAY)
+                throw new IllegalArgumentException("nodeStates of step " + step + " is not an array");
+            int i = 0;
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                if (step == 0)
+                    ensureNodeCapacity(i + 1);
+                else if (i >= ids.length)
+                    throw new IllegalArgumentException("Step " + step + " has more nodes than step 0");
+                int id = Integer.MIN_VALUE;
+                // The scratch arrays still hold an older step, so every field must be present
+                int seen = 0;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    p.nextToken();
+                    switch (field) {
+                        case "id" -> { id = p.getIntValue(); seen |= 1; }
+                        case "color" -> { nextColors[i] = p.getIntValue(); seen |= 2; }
+                        case "parent" -> { nextParents[i] = p.getIntValue(); seen |= 4; }
+                        case "neighborIds" -> { readNeighbors(p, step, i); seen |= 8; }
+                        default -> p.skipChildren();
+                    }
+                }
+                if (seen != 15)
+                    throw new IllegalArgumentException("Node entry " + i + " of step " + step
+                            + " lacks one of id, color, parent, neighborIds");
+                if (step == 0)
+                    expectedIds[i] = id;
+                else if (id != expectedIds[i])
+                    throw new IllegalArgumentException("Step " + step + " lists node " + id + " at position " + i
+                            + ", step 0 lists node " + expectedIds[i]);
+                i++;
+            }
+            return i;
+        }
+
+        private void readNeighbors(JsonParser p, int step, int node) throws IOException {
+            int k = 0;
+            if (step == 0) {
+                while (p.nextToken() == JsonToken.VALUE_NUMBER_INT) {
+                    if (k == scratch.length)
+                        scratch = Arrays.copyOf(scratch, k * 2);
+                    scratch[k++] = p.getIntValue();
+                }
+                neighborIds[node] = Arrays.copyOf(scratch, k);
+                return;
+            }
+            // Later steps repeat the topology of step 0, only verify it
+            int[] expected = neighborIds[node];
+            while (p.nextToken() == JsonToken.VALUE_NUMBER_INT) {
+                if (k >= expected.length || p.getIntValue() != expected[k])
+                    throw new IllegalArgumentException("Neighbors of node " + expectedIds[node] + " in step " + step
+                            + " differ from step 0");
+                k++;
+            }
+            if (k != expected.length)
+                throw new IllegalArgumentException("Neighbors of node " + expectedIds[node] + " in step " + step
+                        + " differ from step 0");
+        }
+
+        private void ensureNodeCapacity(int n) {
+            if (n <= expectedIds.length)
+                return;
+            int size = Math.max(n, expectedIds.length * 2);
+            expectedIds = Arrays.copyOf(expectedIds, size);
+            neighborIds = Arrays.copyOf(neighborIds, size);
+            colors = Arrays.copyOf(colors, size);
+            parents = Arrays.copyOf(parents, size);
+            nextColors = Arrays.copyOf(nextColors, size);
+            nextParents = Arrays.copyOf(nextParents, size);
+        }
+
+        private void initTopology(int n) {
+            ids = Arrays.copyOf(expectedIds, n);
+            expectedIds = ids;
+            for (int i = 0; i < n; i++)
+                indexOf.put(ids[i], i);
+            neighbors = new int[n][];
+            for (int i = 0; i < n; i++) {
+                int[] nb = neighborIds[i];
+                neighbors[i] = new int[nb.length];
+                for (int k = 0; k < nb.length; k++) {
+                    Integer index = indexOf.get(nb[k]);
+                    if (index == null)
+                        throw new IllegalArgumentException("Node " + ids[i] + " has unknown neighbor " + nb[k]);
+                    neighbors[i][k] = index;
+                }
+            }
+            states = new DeltaStateStore(n);
+        }
+    }
+
+    @Override
+    public int nodeCount() {
+        return ids.length;
+    }
+
+    @Override
+    public int nodeId(int index) {
+        return ids[index];
+    }
+
+    @Override
+    public int[] neighborIndices(int index) {
+        return neighbors[index];
+    }
+
+    @Override
+    public int stepCount() {
+        return states.stepCount();
+    }
+
+    @Override
+    public int stepId(int step) {
+        return stepId[step];
+    }
+
+    @Override
+    public int vCurIndex(int step) {
+        return states.vCurIndex(step);
+    }
+
+    @Override
+    public int activeColor(int step) {
+        return states.activeColor(step);
+    }
+
+    @Override
+    public void loadState(int step, int[] colors, int[] parents) {
+        states.loadState(step, colors, parents);
+    }
+
+    @Override
+    public boolean recolored(int step) {
+        return states.recolored(step);
+    }
+}
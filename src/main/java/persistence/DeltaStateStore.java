@@ -0,0 +1,101 @@
+package persistence;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Per-step node states of a {@link Trace}, stored as the changes between consecutive steps plus a full
+ * checkpoint every {@code checkpointInterval} steps, so seeking to any step costs one array copy and at most
+ * checkpointInterval change applications. Steps are appended as: the step's changes, then {@link #endStep}.
+ */
+class DeltaStateStore {
+    private final int nodeCount;
+    private final int checkpointInterval;
+
+    private int stepCount;
+    private int[] vCur = new int[1024];
+    private int[] activeColor = new int[1024];
+    private final BitSet recolored = new BitSet();
+    // Changes of step s are entries changeStart[s] until changeStart[s + 1]
+    private int[] changeStart = new int[1025];
+    private int[] changeNode = new int[1024];
+    private int[] changeColor = new int[1024];
+    private int[] changeParent = new int[1024];
+    private int changeCount;
+    private int[][] checkpointColors = new int[16][];
+    private int[][] checkpointParents = new int[16][];
+
+    DeltaStateStore(int nodeCount) {
+        this.nodeCount = nodeCount;
+        // Checkpoints cost O(n) each, so on large graphs they are spaced so that they never outweigh the changes
+        checkpointInterval = Math.max(256, nodeCount);
+    }
+
+    /** Records that the node has the given state from the current step on. */
+    void appendChange(int node, int color, int parent) {
+        if (changeCount == changeNode.length) {
+            changeNode = Arrays.copyOf(changeNode, changeCount * 2);
+            changeColor = Arrays.copyOf(changeColor, changeCount * 2);
+            changeParent = Arrays.copyOf(changeParent, changeCount * 2);
+        }
+        changeNode[changeCount] = node;
+        changeColor[changeCount] = color;
+        changeParent[changeCount] = parent;
+        changeCount++;
+    }
+
+    /** Closes the current step; colors and parents are the full node state after its changes. */
+    void endStep(int cur, int active, boolean recoloredCur, int[] colors, int[] parents) {
+        if (stepCount == Integer.MAX_VALUE - 1)
+            throw new IllegalStateException("Trace exceeds " + stepCount + " steps");
+        if (stepCount == vCur.length) {
+            int size = (int) Math.min(Integer.MAX_VALUE - 1L, stepCount * 2L);
+            vCur = Arrays.copyOf(vCur, size);
+            activeColor = Arrays.copyOf(activeColor, size);
+            changeStart = Arrays.copyOf(changeStart, size + 1);
+        }
+        vCur[stepCount] = cur;
+        activeColor[stepCount] = active;
+        if (recoloredCur)
+            recolored.set(stepCount);
+        changeStart[stepCount + 1] = changeCount;
+        if (stepCount % checkpointInterval == 0)
+            appendCheckpoint(stepCount / checkpointInterval, colors, parents);
+        stepCount++;
+    }
+
+    private void appendCheckpoint(int k, int[] colors, int[] parents) {
+        if (k == checkpointColors.length) {
+            checkpointColors = Arrays.copyOf(checkpointColors, k * 2);
+            checkpointParents = Arrays.copyOf(checkpointParents, k * 2);
+        }
+        checkpointColors[k] = Arrays.copyOf(colors, nodeCount);
+        checkpointParents[k] = Arrays.copyOf(parents, nodeCount);
+    }
+
+    int stepCount() {
+        return stepCount;
+    }
+
+    int vCurIndex(int step) {
+        return vCur[step];
+    }
+
+    int activeColor(int step) {
+        return activeColor[step];
+    }
+
+    boolean recolored(int step) {
+        return recolored.get(step);
+    }
+
+    void loadState(int step, int[] colors, int[] parents) {
+        int k = step / checkpointInterval;
+        System.arraycopy(checkpointColors[k], 0, colors, 0, nodeCount);
+        System.arraycopy(checkpointParents[k], 0, parents, 0, nodeCount);
+        for (int i = changeStart[k * checkpointInterval + 1]; i < changeStart[step + 1]; i++) {
+            colors[changeNode[i]] = changeColor[i];
+            parents[changeNode[i]] = changeParent[i];
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package persistence;
+
+import measuring.Metrics;
+import simulation.CompactGraph;
+import simulation.Rc;
+import simulation.RunBudget;
+import simulation.TraversalCounters;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Loads SNAP-style edge lists (one whitespace-separated pair of node ids per line, lines starting with '#' or '%'
+ * are comments, extra columns are ignored) into a {@link CompactGraph}.
+ *
+ * The file is memory-mapped and parsed in parallel chunks. Self-loops and duplicate edges are dropped, only the
+ * largest connected component is kept, and nodes are numbered in ascending original-id order. Ports follow the
+ * same order, so loading the same file always yields the same port numbering.
+ */
+public class EdgeListLoader {
+    // Upper bound of a single mapping; FileChannel.map cannot map more than Integer.MAX_VALUE bytes
+    private static final long MAX_CHUNK_BYTES = 256L * 1024 * 1024;
+    // A line starting in a chunk may run past its end by at most this many bytes
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    private static final long SELF_LOOP = Long.MAX_VALUE;
+
+    /** Growable pair of parallel long arrays holding the endpoints parsed from one chunk. */
+    private static class EdgeBuffer {
+        long[] src = new long[1024];
+        long[] dst = new long[1024];
+        int size;
+
+        void add(long a, long b) {
+            if (size == src.length) {
+                src = Arrays.copyOf(src, size * 2);
+                dst = Arrays.copyOf(dst, size * 2);
+            }
+            src[size] = a;
+            dst[size] = b;
+            size++;
+        }
+
+        /** Drops the unused capacity left by doubling. */
+        void trim() {
+            src = Arrays.copyOf(src, size);
+            dst = Arrays.copyOf(dst, size);
+        }
+
+        /** Distinct endpoints of this chunk, ascending. */
+        long[] sortedIds() {
+            long[] all = new long[2 * size];
+            System.arraycopy(src, 0, all, 0, size);
+            System.arraycopy(dst, 0, all, size, size);
+            Arrays.sort(all);
+            return Arrays.copyOf(all, dedupe(all, all.length));
+        }
+    }
+
+    public static CompactGraph load(Path file) throws IOException {
+        return load(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static CompactGraph load(Path file, int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            return load(file, Math.max(1, threads), pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static CompactGraph load(Path file, int threads, ExecutorService pool) throws IOException {
+        List<EdgeBuffer> chunks = parseChunks(file, threads, pool);
+        long total = 0;
+        for (EdgeBuffer b : chunks) total += b.size;
+        if (total > Integer.MAX_VALUE / 2)
+            throw new IllegalArgumentException("Too many edges: " + total);
+
+        // Dense indices in ascending original-id order
+        long[] ids = collectSortedIds(chunks, pool);
+        if (ids.length == 0)
+            throw new IllegalArgumentException("Edge list " + file + " contains no edges");
+
+        // Canonical (min, max) pairs packed into one long, sorted so that duplicates become adjacent.
+        // Self-loops become SELF_LOOP, which sorts after every real edge.
+        int[] chunkStart = new int[chunks.size() + 1];
+        for (int i = 0; i < chunks.size(); i++)
+            chunkStart[i + 1] = chunkStart[i] + chunks.get(i).size;
+        long[] packed = new long[chunkStart[chunks.size()]];
+        List<Future<?>> remaps = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            final EdgeBuffer b = chunks.get(i);
+            final int base = chunkStart[i];
+            remaps.add(pool.submit(() -> {
+                for (int j = 0; j < b.size; j++) {
+                    int u = Arrays.binarySearch(ids, b.src[j]);
+                    int v = Arrays.binarySearch(ids, b.dst[j]);
+                    packed[base + j] = u == v ? SELF_LOOP : pack(Math.min(u, v), Math.max(u, v));
+                }
+                // The endpoints are no longer needed once remapped
+                b.src = null;
+                b.dst = null;
+            }));
+        }
+        await(remaps);
+        chunks.clear();
+        Arrays.parallelSort(packed);
+        int unique = 0;
+        for (int i = 0; i < packed.length && packed[i] != SELF_LOOP; i++) {
+            if (unique == 0 || packed[i] != packed[unique - 1])
+                packed[unique++] = packed[i];
+        }
+
+        // Keep only the largest connected component, relabelled in ascending index order
+        boolean[] inComponent = largestComponent(ids.length, packed, unique);
+        int[] newIndex = new int[ids.length];
+        int kept = 0;
+        for (int v = 0; v < ids.length; v++)
+            newIndex[v] = inComponent[v] ? kept++ : -1;
+        long[] keptIds = new long[kept];
+        for (int v = 0; v < ids.length; v++)
+            if (newIndex[v] >= 0) keptIds[newIndex[v]] = ids[v];
+
+        // Because the pairs are sorted by (min, max), filling the lists in this order leaves every
+        // adjacency list sorted ascending: the smaller neighbors of x all arrive before the pairs with min == x.
+        int[] offsets = new int[kept + 1];
+        int keptEdges = 0;
+        for (int i = 0; i < unique; i++) {
+            int u = newIndex[smaller(packed[i])];
+            if (u < 0) continue;
+            int v = newIndex[larger(packed[i])];
+            offsets[u + 1]++;
+            offsets[v + 1]++;
+            keptEdges++;
+        }
+        // Only self-loops: every node is isolated and Rc has no port to move through
+        if (keptEdges == 0)
+            throw new IllegalArgumentException("Edge list " + file + " contains no edges");
+        for (int v = 0; v < kept; v++)
+            offsets[v + 1] += offsets[v];
+        int[] fill = Arrays.copyOf(offsets, kept);
+        int[] targets = new int[2 * keptEdges];
+        for (int i = 0; i < unique; i++) {
+            int u = newIndex[smaller(packed[i])];
+            if (u < 0) continue;
+            int v = newIndex[larger(packed[i])];
+            targets[fill[u]++] = v;
+            targets[fill[v]++] = u;
+        }
+
+        return new CompactGraph(offsets, targets, keptIds);
+    }
+
+    private static List<EdgeBuffer> parseChunks(Path file, int threads, ExecutorService pool) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            int chunkCount = (int) Math.max(threads, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+            long chunkSize = Math.max(1, (size + chunkCount - 1) / chunkCount);
+
+            List<Future<EdgeBuffer>> futures = new ArrayList<>();
+            for (long start = 0; start < size; start += chunkSize) {
+                final long from = start;
+                final long to = Math.min(size, start + chunkSize);
+                futures.add(pool.submit(() -> parseChunk(ch, size, from, to)));
+            }
+            return await(futures);
+        }
+    }
+
+    private static <T> List<T> await(List<? extends Future<? extends T>> futures) throws IOException {
+        try {
+            List<T> result = new ArrayList<>();
+            for (Future<? extends T> f : futures)
+                result.add(f.get());
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /** Parses every line that starts in [from, to); the last one may extend past 'to'. */
+    private static EdgeBuffer parseChunk(FileChannel ch, long size, long from, long to) throws IOException {
+        // Map one byte before 'from' to tell whether 'from' is the start of a line
+        long mapStart = from == 0 ? 0 : from - 1;
+        long mapEnd = Math.min(size, to + MAX_LINE_BYTES);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        int limit = (int) (to - mapStart);
+        int pos = 0;
+        if (from > 0) {
+            // Skip the partial line owned by the previous chunk
+            while (pos < buf.limit() && buf.get(pos) != '\n') pos++;
+            pos++;
+        }
+
+        EdgeBuffer edges = new EdgeBuffer();
+        long[] pair = new long[2];
+        while (pos < limit) {
+            int lineStart = pos;
+            int end = lineStart;
+            while (end < buf.limit() && buf.get(end) != '\n') end++;
+            if (end == buf.limit() && mapEnd < size)
+                throw new IOException("Line at offset " + (mapStart + lineStart) + " is longer than " + MAX_LINE_BYTES + " bytes");
+            if (parseLine(buf, lineStart, end, pair))
+                edges.add(pair[0], pair[1]);
+            pos = end + 1;
+        }
+        edges.trim();
+        return edges;
+    }
+
+    private static boolean parseLine(MappedByteBuffer buf, int pos, int end, long[] pair) throws IOException {
+        int found = 0;
+        while (found < 2) {
+            while (pos < end && isBlank(buf.get(pos))) pos++;
+            if (pos == end)
+                break;
+            byte b = buf.get(pos);
+            if (found == 0 && (b == '#' || b == '%'))
+                return false;
+            if (b < '0' || b > '9')
+                throw new IOException("Unexpected character '" + (char) b + "' in edge list");
+            long value = 0;
+            while (pos < end && buf.get(pos) >= '0' && buf.get(pos) <= '9') {
+                int digit = buf.get(pos) - '0';
+                if (value > (Long.MAX_VALUE - digit) / 10)
+                    throw new IOException("Node id exceeds " + Long.MAX_VALUE + " in edge list");
+                value = value * 10 + digit;
+                pos++;
+            }
+            pair[found++] = value;
+        }
+        if (found == 1)
+            throw new IOException("Edge list line with a single node id: " + pair[0]);
+        return found == 2;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    // Sorts and dedupes the ids of every chunk in parallel, then merges the (much smaller) per-chunk results
+    private static long[] collectSortedIds(List<EdgeBuffer> chunks, ExecutorService pool) throws IOException {
+        List<Future<long[]>> sorted = new ArrayList<>();
+        for (EdgeBuffer b : chunks)
+            sorted.add(pool.submit(b::sortedIds));
+        List<long[]> runs = await(sorted);
+        while (runs.size() > 1) {
+            List<long[]> merged = new ArrayList<>();
+            for (int i = 0; i + 1 < runs.size(); i += 2)
+                merged.add(mergeDistinct(runs.get(i), runs.get(i + 1)));
+            if (runs.size() % 2 == 1)
+                merged.add(runs.get(runs.size() - 1));
+            runs = merged;
+        }
+        return runs.isEmpty() ? new long[0] : runs.get(0);
+    }
+
+    private static long[] mergeDistinct(long[] a, long[] b) {
+        long[] out = new long[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length || j < b.length) {
+            long next = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i++] : b[j++];
+            if (k == 0 || out[k - 1] != next)
+                out[k++] = next;
+        }
+        return Arrays.copyOf(out, k);
+    }
+
+    // Moves the distinct values of a sorted array prefix to its front, returns their count
+    private static int dedupe(long[] sorted, int length) {
+        int unique = 0;
+        for (int i = 0; i < length; i++) {
+            if (unique == 0 || sorted[i] != sorted[unique - 1])
+                sorted[unique++] = sorted[i];
+        }
+        return unique;
+    }
+
+    private static boolean[] largestComponent(int n, long[] packed, int m) {
+        int[] root = new int[n];
+        for (int v = 0; v < n; v++) root[v] = v;
+        for (int i = 0; i < m; i++) {
+            int a = find(root, smaller(packed[i]));
+            int b = find(root, larger(packed[i]));
+            if (a != b) root[Math.max(a, b)] = Math.min(a, b);
+        }
+        int[] sizes = new int[n];
+        int best = 0;
+        for (int v = 0; v < n; v++) {
+            int r = find(root, v);
+            if (++sizes[r] > sizes[best]) best = r;
+        }
+        boolean[] inComponent = new boolean[n];
+        for (int v = 0; v < n; v++)
+            inComponent[v] = find(root, v) == best;
+        return inComponent;
+    }
+
+    private static int find(int[] root, int v) {
+        while (root[v] != v) {
+            root[v] = root[root[v]];
+            v = root[v];
+        }
+        return v;
+    }
+
+    private static long pack(int a, int b) {
+        return (((long) a) << 32) | (b & 0xffffffffL);
+    }
+
+    private static int smaller(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int larger(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Usage: EdgeListLoader &lt;edge-list file&gt; [c] [maxMoves]. With -Drc.counters=true the most visited
+     * nodes are listed after the run.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: EdgeListLoader <edge-list file> [c] [maxMoves]");
+            return;
+        }
+        int c = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long maxMoves = args.length > 2 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+
+        long start = System.nanoTime();
+        CompactGraph graph = load(Path.of(args[0]));
+        System.out.println("Loaded largest component: " + graph.nodeCount() + " nodes, " + graph.edgeCount() +
+                " edges in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        Rc rc = new Rc(c, null, new RunBudget(maxMoves, 0));
+        TraversalCounters counters = Boolean.getBoolean("rc.counters") ? TraversalCounters.forGraph(graph) : null;
+        rc.setCounters(counters);
+        start = System.nanoTime();
+        Metrics m = rc.traverse(graph);
+        System.out.println("Rc finished in " + (System.nanoTime() - start) / 1_000_000 + " ms: moves=" + m.moves +
+                " colorChanges=" + m.colorChanges + " iterations=" + m.iterations +
+                (m.censored ? " (censored: " + m.censorReason + ")" : ""));
+
+        if (counters != null) {
+            System.out.println("Most visited nodes (id: visits, recolors, degree):");
+            IntStream.range(0, counters.nodeCount()).boxed()
+                    .sorted(Comparator.comparingInt((Integer v) -> counters.nodeVisits[v]).reversed())
+                    .limit(10)
+                    .forEach(v -> System.out.println("  " + graph.originalId(v) + ": " + counters.nodeVisits[v] +
+                            ", " + counters.nodeRecolors[v] + ", " + counters.degree(v)));
+        }
+    }
+}
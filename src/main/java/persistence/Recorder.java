@@ -2,6 +2,8 @@ package persistence;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import simulation.Node;
+import simulation.StepListener;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -10,7 +12,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 /** Recorder with activeColor field added to Step. */
-public class Recorder {
+public class Recorder implements StepListener {
     public static class NodeState { 
         public int id; 
         public int color; 
@@ -28,14 +30,16 @@ public class Recorder {
     private final List<Step> steps = new ArrayList<>();
     private int nextStepId = 0;
 
-    public synchronized void recordMove(Object vCurGeneric, List<?> allNodesGeneric, int activeColor) {
-        Step s = buildStep(vCurGeneric, allNodesGeneric, activeColor);
+    @Override
+    public synchronized void recordMove(Node vCur, List<Node> allNodes, int activeColor) {
+        Step s = buildStep(vCur, allNodes, activeColor);
         s.stepID = nextStepId++;
         steps.add(s);
     }
 
-    public synchronized void recordColorChange(Object vCurGeneric, List<?> allNodesGeneric, int activeColor) {
-        Step s = buildStep(vCurGeneric, allNodesGeneric, activeColor);
+    @Override
+    public synchronized void recordColorChange(Node vCur, List<Node> allNodes, int activeColor) {
+        Step s = buildStep(vCur, allNodes, activeColor);
         s.stepID = nextStepId++;
         steps.add(s);
     }
@@ -71,6 +75,11 @@ public class Recorder {
         return s;
     }
 
+    @Override
+    public boolean debugOutput() {
+        return true;
+    }
+
     public synchronized void saveToFile(Path out) {
         try {
             Gson g = new GsonBuilder().setPrettyPrinting().create();
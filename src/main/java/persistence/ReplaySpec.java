@@ -0,0 +1,150 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import measuring.Measurement;
+import simulation.Node;
+import simulation.RunBudget;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Everything needed to re-run one Rc traversal: the generator parameters and seed of the graph and the seed of
+ * the Rc instance. A replay file replaces a full {@link Recorder} trace;
+ * the steps are regenerated by {@link ReplayTrace}.
+ */
+public class ReplaySpec {
+    public static final String FORMAT = "rc-replay";
+
+    public String format = FORMAT;
+    public int c;
+    public long runSeed;
+    // Move budget of the run (RunBudget.maxMoves), so a run censored in the sweep stops at the same point
+    // when replayed; 0 means unlimited, e.g. in replay files written before the budget was stored
+    public long maxMoves;
+    // The sweep stopped this run on its wall time limit, which depends on the machine and is not replayed
+    public boolean wallTimeCensored;
+
+    // Generated graph, see Node.generateRandomConnectedGraph(int, double, int, long)
+    public int nodeCount;
+    public double density;
+    public long graphSeed;
+
+    public static ReplaySpec generated(int c, int nodeCount, double density, long graphSeed, long runSeed) {
+        ReplaySpec spec = new ReplaySpec();
+        spec.c = c;
+        spec.nodeCount = nodeCount;
+        spec.density = density;
+        spec.graphSeed = graphSeed;
+        spec.runSeed = runSeed;
+        return spec;
+    }
+
+    /**
+     * The given run of a Measurement, identified by the seed stored in the measurement output, under the move
+     * budget the sweep ran it with.
+     */
+    public static ReplaySpec forMeasurementRun(int c, int nodeCount, double density, long measurementSeed, int run,
+                                               long maxMoves) {
+        ReplaySpec spec = generated(c, nodeCount, density,
+                Measurement.graphSeed(measurementSeed, run), Measurement.runSeed(measurementSeed, run));
+        spec.maxMoves = maxMoves;
+        return spec;
+    }
+
+    /** The budget to replay the run with. Wall time is not stored, it depends on the machine. */
+    public RunBudget budget() {
+        return maxMoves > 0 ? new RunBudget(maxMoves, 0) : RunBudget.UNLIMITED;
+    }
+
+    public List<Node> buildGraph() {
+        return Node.generateRandomConnectedGraph(nodeCount, density, c, graphSeed);
+    }
+
+    public void saveToFile(Path out) {
+        try {
+            Gson g = new GsonBuilder().setPrettyPrinting().create();
+            String json = g.toJson(this);
+            Files.createDirectories(out.getParent());
+            Files.write(out, json.getBytes());
+        } catch (IOException e) { throw new RuntimeException(e); }
+    }
+
+    public static ReplaySpec load(Reader r) {
+        ReplaySpec spec = new Gson().fromJson(r, ReplaySpec.class);
+        if (spec == null || !FORMAT.equals(spec.format))
+            throw new IllegalArgumentException("Not a replay file");
+        return spec;
+    }
+
+    /**
+     * The given run of a configuration in a sweep output (Signature JSON), with the seed and the run budget
+     * stored there. Runs the sweep stopped on its wall time limit are marked {@link #wallTimeCensored}.
+     */
+    public static ReplaySpec fromSweepOutput(Path file, int c, int nodeCount, double density, int run) {
+        SweepOutput output;
+        try (Reader r = Files.newBufferedReader(file)) {
+            output = new Gson().fromJson(r, SweepOutput.class);
+        } catch (IOException e) { throw new RuntimeException(e); }
+        if (output == null || output.measurements == null)
+            throw new IllegalArgumentException(file + " is not a sweep output");
+
+        for (SweepRun m : output.measurements) {
+            // Older outputs accumulated the densities in floating point, e.g. 0.30000000000000004
+            if (m.c != c || m.nodeCount != nodeCount || Math.abs(m.density - density) > 1e-9)
+                continue;
+            if (Boolean.TRUE.equals(m.ladder))
+                throw new IllegalArgumentException("Ladder runs cannot be replayed, their graphs come from DensityLadder");
+            if (m.seed == null)
+                throw new IllegalArgumentException(file + " was written before the seeds were stored");
+            if (run < 0 || run >= m.runsCount)
+                throw new IllegalArgumentException("Run must be in [0, " + m.runsCount + ")");
+            ReplaySpec spec = forMeasurementRun(c, nodeCount, m.density, m.seed, run, m.maxRunMoves);
+            spec.wallTimeCensored = m.wallTimeCensoredRuns != null && m.wallTimeCensoredRuns.contains(run);
+            return spec;
+        }
+        throw new IllegalArgumentException("No configuration c=" + c + " n=" + nodeCount + " d=" + density + " in " + file);
+    }
+
+    // Only the fields needed from a sweep output
+    private static class SweepOutput {
+        List<SweepRun> measurements;
+    }
+
+    private static class SweepRun {
+        int c;
+        int nodeCount;
+        double density;
+        int runsCount;
+        Long seed;
+        long maxRunMoves;
+        Boolean ladder;
+        List<Integer> wallTimeCensoredRuns;
+    }
+
+    /** Writes the replay file of one run of a Measurement sweep: sweep output, c, nodeCount, density, run. */
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            System.out.println("Usage: ReplaySpec <sweep output> <c> <nodeCount> <density> <run>");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        int c = Integer.parseInt(args[1]);
+        int n = Integer.parseInt(args[2]);
+        double d = Double.parseDouble(args[3]);
+        int run = Integer.parseInt(args[4]);
+
+        ReplaySpec spec = fromSweepOutput(file, c, n, d, run);
+        if (spec.wallTimeCensored)
+            System.out.println("Warning: the sweep stopped this run on its wall time limit; the replay is not cut at "
+                    + "the same step but runs up to the move budget");
+        Path out = Paths.get("target", "traces", "replay-" + c + "-" + n + "-" + d + "-" + run + ".json");
+        spec.saveToFile(out);
+        System.out.println("Replay saved to " + out);
+    }
+}
@@ -0,0 +1,193 @@
+package persistence;
+
+import measuring.Metrics;
+import simulation.Node;
+import simulation.Rc;
+import simulation.RunBudget;
+import simulation.StepListener;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Trace} regenerated from a {@link ReplaySpec} by re-running Rc. Instead of a full snapshot per step it
+ * keeps the per-step changes (a few ints) plus periodic checkpoints in a {@link DeltaStateStore}.
+ */
+public class ReplayTrace implements Trace {
+    private final int[] ids;
+    private final int[][] neighbors;
+    private final DeltaStateStore states;
+    // Why the replayed run stopped early, null when it terminated
+    private String censorReason;
+    private boolean wallTimeCensored;
+
+    private ReplayTrace(List<Node> nodes) {
+        int n = nodes.size();
+        ids = new int[n];
+        neighbors = new int[n][];
+        Map<Node, Integer> indexOf = new IdentityHashMap<>();
+        for (int i = 0; i < n; i++) {
+            ids[i] = nodes.get(i).id;
+            indexOf.put(nodes.get(i), i);
+        }
+        for (int i = 0; i < n; i++)
+            neighbors[i] = nodes.get(i).neighbors.stream().mapToInt(indexOf::get).toArray();
+        states = new DeltaStateStore(n);
+    }
+
+    /**
+     * Steps a replay keeps at most, -Drc.replay.maxSteps. A step costs about 33 bytes here plus 4 in a
+     * TraceIndex, so the default stays around 200 MB, while a run at the sweep's 50M-move budget would need GBs.
+     */
+    public static final int MAX_STEPS = Integer.getInteger("rc.replay.maxSteps", 5_000_000);
+
+    /** Regenerates the steps of the run described by the spec, under the budget stored in it. */
+    public static ReplayTrace replay(ReplaySpec spec) {
+        return replay(spec, spec.budget());
+    }
+
+    public static ReplayTrace replay(ReplaySpec spec, RunBudget budget) {
+        return replay(spec, budget, MAX_STEPS);
+    }
+
+    /** Stops after maxSteps steps, with censorReason "steps", if the run is longer. */
+    public static ReplayTrace replay(ReplaySpec spec, RunBudget budget, int maxSteps) {
+        List<Node> nodes = spec.buildGraph();
+        ReplayTrace trace = new ReplayTrace(nodes);
+        trace.wallTimeCensored = spec.wallTimeCensored;
+        try {
+            Metrics m = new Rc(spec.c, trace.new Builder(nodes, maxSteps), budget, spec.runSeed).traverse(nodes);
+            trace.censorReason = m.censored ? m.censorReason : null;
+        } catch (StepLimitReached e) {
+            trace.censorReason = "steps";
+        }
+        return trace;
+    }
+
+    // Thrown by the Builder to abandon the traversal once the step limit is reached
+    private static class StepLimitReached extends RuntimeException {
+        StepLimitReached() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** Why the replayed run was cut short, as in Metrics.censorReason or "steps" for the step limit, or null. */
+    public String censorReason() {
+        return censorReason;
+    }
+
+    /** Whether the sweep stopped the original run on its wall time, so the replay may end at a different step. */
+    public boolean wallTimeCensored() {
+        return wallTimeCensored;
+    }
+
+    /**
+     * Receives the steps from Rc and stores what changed since the previous step. Between two steps Rc only
+     * changes the previous and the current node, except at the start of an outer iteration (when the active
+     * color changes), where every parent is reset; only those steps need a full comparison.
+     */
+    private class Builder implements StepListener {
+        private final Map<Node, Integer> indexOf = new IdentityHashMap<>();
+        private final List<Node> nodes;
+        private final int[] colors;
+        private final int[] parents;
+        private int lastCur = -1;
+        private int lastActiveColor = -1;
+        private final int maxSteps;
+
+        Builder(List<Node> nodes, int maxSteps) {
+            this.nodes = nodes;
+            this.maxSteps = maxSteps;
+            for (int i = 0; i < nodes.size(); i++)
+                indexOf.put(nodes.get(i), i);
+            colors = new int[nodes.size()];
+            parents = new int[nodes.size()];
+            Arrays.fill(colors, Integer.MIN_VALUE);
+        }
+
+        @Override
+        public void recordMove(Node vCur, List<Node> allNodes, int activeColor) {
+            record(vCur, activeColor);
+        }
+
+        @Override
+        public void recordColorChange(Node vCur, List<Node> allNodes, int activeColor) {
+            record(vCur, activeColor);
+        }
+
+        private void record(Node current, int active) {
+            int step = states.stepCount();
+            if (step >= maxSteps)
+                throw new StepLimitReached();
+            int cur = indexOf.get(current);
+            int curColorBefore = colors[cur];
+            if (step == 0 || active != lastActiveColor) {
+                for (int i = 0; i < nodes.size(); i++)
+                    compare(i);
+            } else {
+                compare(lastCur);
+                if (cur != lastCur)
+                    compare(cur);
+            }
+            states.endStep(cur, active, step > 0 && colors[cur] != curColorBefore, colors, parents);
+            lastCur = cur;
+            lastActiveColor = active;
+        }
+
+        private void compare(int i) {
+            Node v = nodes.get(i);
+            if (v.color != colors[i] || v.parent != parents[i]) {
+                colors[i] = v.color;
+                parents[i] = v.parent;
+                states.appendChange(i, v.color, v.parent);
+            }
+        }
+    }
+
+    @Override
+    public int nodeCount() {
+        return ids.length;
+    }
+
+    @Override
+    public int nodeId(int index) {
+        return ids[index];
+    }
+
+    @Override
+    public int[] neighborIndices(int index) {
+        return neighbors[index];
+    }
+
+    @Override
+    public int stepCount() {
+        return states.stepCount();
+    }
+
+    @Override
+    public int stepId(int step) {
+        return step;
+    }
+
+    @Override
+    public int vCurIndex(int step) {
+        return states.vCurIndex(step);
+    }
+
+    @Override
+    public int activeColor(int step) {
+        return states.activeColor(step);
+    }
+
+    @Override
+    public void loadState(int step, int[] colors, int[] parents) {
+        states.loadState(step, colors, parents);
+    }
+
+    @Override
+    public boolean recolored(int step) {
+        return states.recolored(step);
+    }
+}
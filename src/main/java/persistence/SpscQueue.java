@@ -0,0 +1,72 @@
+package persistence;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer thread.
+ * Each side caches the other side's index and only re-reads it when the queue looks full (or empty).
+ */
+public class SpscQueue<E> {
+    private final Object[] buffer;
+    private final int mask;
+    // Next slot to read, written only by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to write, written only by the producer
+    private final AtomicLong tail = new AtomicLong();
+    private long cachedHead; // producer's view of head
+    private long cachedTail; // consumer's view of tail
+
+    /** The capacity is rounded up to a power of two. */
+    public SpscQueue(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30))
+            throw new IllegalArgumentException("capacity must be in [1, 2^30]");
+        int size = 1;
+        while (size < capacity) size <<= 1;
+        buffer = new Object[size];
+        mask = size - 1;
+    }
+
+    /** Producer only: whether the next offer would succeed. */
+    public boolean hasSpace() {
+        long t = tail.get();
+        if (t - cachedHead < buffer.length)
+            return true;
+        cachedHead = head.get();
+        return t - cachedHead < buffer.length;
+    }
+
+    /** Producer only: enqueues e, or returns false when the queue is full. */
+    public boolean offer(E e) {
+        if (!hasSpace())
+            return false;
+        long t = tail.get();
+        buffer[(int) t & mask] = e;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /** Consumer only: dequeues the oldest element, or returns null when the queue is empty. */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long h = head.get();
+        if (h >= cachedTail) {
+            cachedTail = tail.get();
+            if (h >= cachedTail)
+                return null;
+        }
+        int i = (int) h & mask;
+        E e = (E) buffer[i];
+        buffer[i] = null;
+        head.lazySet(h + 1);
+        return e;
+    }
+
+    /** Approximate number of queued elements; exact only when both sides are idle. */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
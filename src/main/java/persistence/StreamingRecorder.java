@@ -0,0 +1,153 @@
+package persistence;
+
+import simulation.Node;
+import simulation.StepListener;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link StepListener} that hands each step to a consumer thread through a bounded {@link SpscQueue} instead of
+ * storing it. Rc is the producer; when the queue is full it either waits (BLOCK) or skips the step (DROP). In DROP
+ * mode the queue holds a single frame, so a new frame is only built once the consumer has taken the previous one.
+ * The final step of the run is always delivered, so the consumer ends on the true end state.
+ */
+public class StreamingRecorder implements StepListener {
+    public enum Mode { BLOCK, DROP }
+
+    /** Node state at one step, indexed like the node list of the run. */
+    public static class Frame {
+        public final int stepId;
+        public final int vCurIndex;
+        public final int activeColor;
+        public final int[] colors;
+        public final int[] parents;
+
+        Frame(int stepId, int vCurIndex, int activeColor, int[] colors, int[] parents) {
+            this.stepId = stepId;
+            this.vCurIndex = vCurIndex;
+            this.activeColor = activeColor;
+            this.colors = colors;
+            this.parents = parents;
+        }
+    }
+
+    private final SpscQueue<Frame> queue;
+    private final Mode mode;
+    private final List<Node> nodes;
+    private final Map<Node, Integer> indexOf = new IdentityHashMap<>();
+    private final int[] ids;
+    private final int[][] neighbors;
+
+    private int nextStepId;
+    private Node lastVCur;
+    private int lastActiveColor;
+    private boolean lastDropped;
+    private volatile long dropped;
+    private volatile boolean finished;
+    private volatile Throwable failure;
+
+    /** capacity is the queue size in BLOCK mode; DROP mode always uses a single slot. */
+    public StreamingRecorder(List<Node> nodes, int capacity, Mode mode) {
+        this.nodes = nodes;
+        this.queue = new SpscQueue<>(mode == Mode.DROP ? 1 : capacity);
+        this.mode = mode;
+        ids = new int[nodes.size()];
+        neighbors = new int[nodes.size()][];
+        for (int i = 0; i < nodes.size(); i++) {
+            ids[i] = nodes.get(i).id;
+            indexOf.put(nodes.get(i), i);
+        }
+        for (int i = 0; i < nodes.size(); i++)
+            neighbors[i] = nodes.get(i).neighbors.stream().mapToInt(indexOf::get).toArray();
+    }
+
+    @Override
+    public void recordMove(Node vCur, List<Node> allNodes, int activeColor) {
+        publish(vCur, activeColor);
+    }
+
+    @Override
+    public void recordColorChange(Node vCur, List<Node> allNodes, int activeColor) {
+        publish(vCur, activeColor);
+    }
+
+    private void publish(Node vCur, int activeColor) {
+        int stepId = nextStepId++;
+        lastVCur = vCur;
+        lastActiveColor = activeColor;
+        // Check for space first so that dropped steps do not pay for building a frame
+        lastDropped = mode == Mode.DROP && !queue.hasSpace();
+        if (lastDropped) {
+            dropped++;
+            return;
+        }
+        offer(buildFrame(stepId, vCur, activeColor));
+    }
+
+    /** Called by the producer after the traversal; delivers the final state if its step was dropped. */
+    public void finish() {
+        try {
+            if (lastDropped)
+                offer(buildFrame(nextStepId - 1, lastVCur, lastActiveColor));
+        } finally {
+            finished = true;
+        }
+    }
+
+    /** Called by the producer when the traversal failed; ends the stream, see {@link #failure()}. */
+    public void fail(Throwable t) {
+        failure = t;
+        finished = true;
+    }
+
+    private void offer(Frame frame) {
+        while (!queue.offer(frame)) {
+            if (Thread.currentThread().isInterrupted())
+                throw new CancellationException("Live simulation cancelled");
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    private Frame buildFrame(int stepId, Node vCur, int activeColor) {
+        int n = nodes.size();
+        int[] colors = new int[n];
+        int[] parents = new int[n];
+        for (int i = 0; i < n; i++) {
+            Node v = nodes.get(i);
+            colors[i] = v.color;
+            parents[i] = v.parent;
+        }
+        return new Frame(stepId, indexOf.get(vCur), activeColor, colors, parents);
+    }
+
+    /** Consumer side: the next frame, or null when none is available right now. */
+    public Frame poll() {
+        return queue.poll();
+    }
+
+    /** True once the producer has finished and every frame has been consumed. */
+    public boolean isDone() {
+        return finished && queue.size() == 0;
+    }
+
+    /** Why the producer stopped early, or null. */
+    public Throwable failure() {
+        return failure;
+    }
+
+    public long droppedSteps() {
+        return dropped;
+    }
+
+    public int[] nodeIds() {
+        return ids;
+    }
+
+    public int[][] neighborIndices() {
+        return neighbors;
+    }
+}
@@ -0,0 +1,30 @@
+package persistence;
+
+/**
+ * Read-only view of a recorded run, as consumed by the visualizer. Nodes are addressed by their index
+ * (position in the traversed node list), steps by their position in the trace.
+ */
+public interface Trace {
+    int nodeCount();
+
+    /** Id shown for the node (Node.id at recording time). */
+    int nodeId(int index);
+
+    /** Neighbor indices of the node, in port order. */
+    int[] neighborIndices(int index);
+
+    int stepCount();
+
+    /** stepID as written by the Recorder. */
+    int stepId(int step);
+
+    int vCurIndex(int step);
+
+    int activeColor(int step);
+
+    /** Fills colors and parents (indexed by node index) with the node state at the given step. */
+    void loadState(int step, int[] colors, int[] parents);
+
+    /** Whether the color of the current node changed at this step. */
+    boolean recolored(int step);
+}
@@ -0,0 +1,122 @@
+package persistence;
+
+import java.util.Arrays;
+
+/**
+ * Step numbers of the notable events of a {@link Trace}, built in one pass so that the visualizer can jump to
+ * them directly. All lookups are binary searches over sorted int arrays.
+ */
+public class TraceIndex {
+    // Steps at which the current node was recolored
+    private final int[] colorChanges;
+    // First step of every outer iteration (the active color changes exactly there)
+    private final int[] outerStarts;
+    // Visit steps of node v are visits[visitStart[v]] until visits[visitStart[v + 1]], ascending
+    private final int[] visitStart;
+    private final int[] visits;
+
+    public TraceIndex(Trace trace) {
+        int stepCount = trace.stepCount();
+        int n = trace.nodeCount();
+        int[] colorChangeBuf = new int[16];
+        int colorChangeCount = 0;
+        int[] outerBuf = new int[16];
+        int outerCount = 0;
+        int[] vCur = new int[stepCount];
+        visitStart = new int[n + 1];
+
+        for (int step = 0; step < stepCount; step++) {
+            if (trace.recolored(step)) {
+                if (colorChangeCount == colorChangeBuf.length)
+                    colorChangeBuf = Arrays.copyOf(colorChangeBuf, colorChangeCount * 2);
+                colorChangeBuf[colorChangeCount++] = step;
+            }
+            if (step == 0 || trace.activeColor(step) != trace.activeColor(step - 1)) {
+                if (outerCount == outerBuf.length)
+                    outerBuf = Arrays.copyOf(outerBuf, outerCount * 2);
+                outerBuf[outerCount++] = step;
+            }
+            vCur[step] = trace.vCurIndex(step);
+            if (vCur[step] >= 0)
+                visitStart[vCur[step] + 1]++;
+        }
+        colorChanges = Arrays.copyOf(colorChangeBuf, colorChangeCount);
+        outerStarts = Arrays.copyOf(outerBuf, outerCount);
+
+        // Counting sort of the steps by node keeps every node's visits in ascending order
+        for (int v = 0; v < n; v++)
+            visitStart[v + 1] += visitStart[v];
+        visits = new int[visitStart[n]];
+        int[] fill = Arrays.copyOf(visitStart, n);
+        for (int step = 0; step < stepCount; step++)
+            if (vCur[step] >= 0)
+                visits[fill[vCur[step]]++] = step;
+    }
+
+    public int colorChangeCount() {
+        return colorChanges.length;
+    }
+
+    /** First color change after step, or -1. */
+    public int nextColorChange(int step) {
+        return after(colorChanges, 0, colorChanges.length, step);
+    }
+
+    /** Last color change before step, or -1. */
+    public int prevColorChange(int step) {
+        return before(colorChanges, 0, colorChanges.length, step);
+    }
+
+    public int outerIterationCount() {
+        return outerStarts.length;
+    }
+
+    /** First step of outer iteration k (0-based), or -1 if there is no such iteration. */
+    public int outerStart(int k) {
+        return k >= 0 && k < outerStarts.length ? outerStarts[k] : -1;
+    }
+
+    /** Outer iteration (0-based) that contains step. */
+    public int outerIterationOf(int step) {
+        int i = Arrays.binarySearch(outerStarts, step);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /** First step at which node (by index) is the current node, or -1. */
+    public int firstVisit(int node) {
+        return visitStart[node] < visitStart[node + 1] ? visits[visitStart[node]] : -1;
+    }
+
+    /** Last step at which node is the current node, or -1. */
+    public int lastVisit(int node) {
+        return visitStart[node] < visitStart[node + 1] ? visits[visitStart[node + 1] - 1] : -1;
+    }
+
+    /** First visit of node after step, or -1. */
+    public int nextVisit(int node, int step) {
+        return after(visits, visitStart[node], visitStart[node + 1], step);
+    }
+
+    /** Last visit of node before step, or -1. */
+    public int prevVisit(int node, int step) {
+        return before(visits, visitStart[node], visitStart[node + 1], step);
+    }
+
+    public int visitCount(int node) {
+        return visitStart[node + 1] - visitStart[node];
+    }
+
+    // Smallest a[i] > step in a[from, to), or -1
+    private static int after(int[] a, int from, int to, int step) {
+        int i = Arrays.binarySearch(a, from, to, step);
+        i = i >= 0 ? i + 1 : -i - 1;
+        return i < to ? a[i] : -1;
+    }
+
+    // Largest a[i] < step in a[from, to), or -1
+    private static int before(int[] a, int from, int to, int step) {
+        int i = Arrays.binarySearch(a, from, to, step);
+        i = i >= 0 ? i - 1 : -i - 2;
+        return i >= from ? a[i] : -1;
+    }
+}
@@ -0,0 +1,70 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Immutable undirected graph in compressed sparse row form, for graphs too large to hold as {@link Node} objects.
+ * Nodes are indexed 0..n-1 and port p of node v leads to {@code neighbor(v, p)}; {@code reversePort(v, p)} is the
+ * port of v at that neighbor, so a move can compute the new pin in O(1).
+ * Each adjacency list must be sorted ascending; this also makes the port numbering deterministic.
+ */
+public class CompactGraph {
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] reversePorts;
+    // Id of each node in the source the graph was built from (e.g. the edge-list file)
+    private final long[] originalIds;
+
+    public CompactGraph(int[] offsets, int[] targets, long[] originalIds) {
+        if (offsets.length != originalIds.length + 1 || offsets[offsets.length - 1] != targets.length)
+            throw new IllegalArgumentException("offsets, targets and originalIds do not describe the same graph");
+        this.offsets = offsets;
+        this.targets = targets;
+        this.originalIds = originalIds;
+        this.reversePorts = computeReversePorts(offsets, targets);
+    }
+
+    public int nodeCount() {
+        return originalIds.length;
+    }
+
+    public long edgeCount() {
+        return targets.length / 2;
+    }
+
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    public int neighbor(int v, int port) {
+        return targets[offsets[v] + port];
+    }
+
+    public int reversePort(int v, int port) {
+        return reversePorts[offsets[v] + port];
+    }
+
+    /** Position of (v, port) in the flat edge-slot arrays, usable as an index into per-port counters. */
+    public int slot(int v, int port) {
+        return offsets[v] + port;
+    }
+
+    public long originalId(int v) {
+        return originalIds[v];
+    }
+
+    // Adjacency lists are sorted ascending, so the reverse port can be found by binary search
+    private static int[] computeReversePorts(int[] offsets, int[] targets) {
+        int[] reverse = new int[targets.length];
+        for (int v = 0; v + 1 < offsets.length; v++) {
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                int w = targets[i];
+                int j = Arrays.binarySearch(targets, offsets[w], offsets[w + 1], v);
+                if (j < 0)
+                    throw new IllegalArgumentException("Edge " + v + "-" + w + " is not symmetric");
+                reverse[i] = j - offsets[w];
+            }
+        }
+        return reverse;
+    }
+}
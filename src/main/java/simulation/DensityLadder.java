@@ -0,0 +1,134 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Nested sequence of random connected graphs on the same n nodes: a random spanning tree plus a random order of
+ * extra edges, of which each density uses a prefix. Growing the graph from one density to the next only adds
+ * the missing edges, so a whole density sweep costs as much generation as its densest graph, and the graphs of
+ * different densities are coupled (each contains the previous one), which makes density trends less noisy.
+ *
+ * Adding edges only appends to the neighbor lists, so the ports of existing edges never change. Every
+ * {@link #growTo} restores the initial colors, so each density starts from the same coloring.
+ */
+public class DensityLadder {
+    private final int n;
+    private final List<Node> nodes;
+    private final int[] initialColors;
+    // Endpoints of the edges in insertion order: the n - 1 tree edges first
+    private final int[] edgeA;
+    private final int[] edgeB;
+    private int added;
+    private double lastDensity = -1;
+
+    /** Prepares the edges for every density up to maxDensity; the result is fully determined by the seed. */
+    public DensityLadder(int n, double maxDensity, int c, long seed) {
+        if (n < 1)
+            throw new IllegalArgumentException("n must be >= 1");
+        if (maxDensity < 0.0 || maxDensity > 1.0)
+            throw new IllegalArgumentException("density must be in [0,1]");
+        this.n = n;
+        Random rnd = new Random(seed);
+
+        nodes = new ArrayList<>(n);
+        initialColors = new int[n];
+        for (int i = 1; i <= n; i++) {
+            Node v = new Node(c, i, rnd);
+            initialColors[i - 1] = v.color;
+            nodes.add(v);
+        }
+
+        long maxEdges = desiredEdges(maxDensity);
+        if (maxEdges > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many edges for n=" + n);
+        edgeA = new int[(int) maxEdges];
+        edgeB = new int[(int) maxEdges];
+
+        // Random spanning tree first (n-1 edges), as in Node.generateRandomConnectedGraph
+        List<Integer> order = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) order.add(i);
+        Collections.shuffle(order, rnd);
+        Set<Long> existing = new HashSet<>();
+        int k = 0;
+        for (int i = 1; i < n; i++) {
+            int u = order.get(i);
+            int v = order.get(rnd.nextInt(i));
+            edgeA[k] = u;
+            edgeB[k] = v;
+            k++;
+            existing.add(packEdge(Math.min(u, v), Math.max(u, v)));
+        }
+
+        long extra = maxEdges - (n - 1);
+        long candidates = (long) n * (n - 1) / 2 - (n - 1);
+        if (extra * 2 > candidates) {
+            // Dense: shuffle all non-tree pairs and take a prefix
+            long[] pairs = new long[(int) candidates];
+            int m = 0;
+            for (int i = 0; i < n; i++)
+                for (int j = i + 1; j < n; j++)
+                    if (!existing.contains(packEdge(i, j)))
+                        pairs[m++] = packEdge(i, j);
+            for (int i = 0; i < extra; i++) {
+                int j = i + rnd.nextInt(m - i);
+                long tmp = pairs[i]; pairs[i] = pairs[j]; pairs[j] = tmp;
+                edgeA[k] = (int) (pairs[i] >>> 32);
+                edgeB[k] = (int) pairs[i];
+                k++;
+            }
+        } else {
+            // Sparse: rejection sampling; the accepted sequence is a uniformly random ordered sample
+            while (k < maxEdges) {
+                int a = rnd.nextInt(n);
+                int b = rnd.nextInt(n);
+                if (a == b)
+                    continue;
+                int x = Math.min(a, b), y = Math.max(a, b);
+                if (!existing.add(packEdge(x, y)))
+                    continue;
+                edgeA[k] = x;
+                edgeB[k] = y;
+                k++;
+            }
+        }
+    }
+
+    /**
+     * Adds edges until the graph has the given density (at least n - 1 edges) and resets the node state.
+     * Densities must be requested in non-decreasing order and not exceed the maximum density.
+     */
+    public List<Node> growTo(double density) {
+        if (density < lastDensity)
+            throw new IllegalArgumentException("Densities must be non-decreasing");
+        long target = desiredEdges(density);
+        if (target > edgeA.length)
+            throw new IllegalArgumentException("density exceeds the maximum density of the ladder");
+        for (; added < target; added++)
+            Node.createEdge(nodes.get(edgeA[added]), nodes.get(edgeB[added]));
+        lastDensity = density;
+
+        for (int i = 0; i < n; i++) {
+            nodes.get(i).color = initialColors[i];
+            nodes.get(i).parent = 0;
+        }
+        return nodes;
+    }
+
+    public long edgeCount() {
+        return added;
+    }
+
+    private long desiredEdges(double density) {
+        long possibleEdges = (long) n * (n - 1) / 2;
+        return Math.max(n - 1, Math.round(density * possibleEdges));
+    }
+
+    private static long packEdge(int a, int b) {
+        return (((long) a) << 32) | (b & 0xffffffffL);
+    }
+}
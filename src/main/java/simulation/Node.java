@@ -9,11 +9,18 @@ public class Node {
     //-1 represents \bottom
     public int parent;
     public List<Node> neighbors = new ArrayList<>();
+    // Position in the traversed node list; only maintained by Rc while TraversalCounters are attached
+    public int index;
 
     public Node(int c, int id) {
+        this(c, id, null);
+    }
+
+    /** Draws the initial color from rnd, or from Math.random() when rnd is null. */
+    public Node(int c, int id, Random rnd) {
         if (c < 2)
             throw new IllegalArgumentException("C must be greater or equal to 2!");
-        this.color = simulation.Rc.randomColor(c);
+        this.color = rnd == null ? simulation.Rc.randomColor(c) : rnd.nextInt(c);
 
         this.id = id;
     }
@@ -32,15 +39,23 @@ public class Node {
      * When the density is too low to ensure connectivity, it is adjusted upwards (to n - 1 edges).
      */
     public static List<Node> generateRandomConnectedGraph(int n, double density, int c) {
+        return generateRandomConnectedGraph(n, density, c, new Random());
+    }
+
+    /** Same as {@link #generateRandomConnectedGraph(int, double, int)}, but fully determined by the seed. */
+    public static List<Node> generateRandomConnectedGraph(int n, double density, int c, long seed) {
+        return generateRandomConnectedGraph(n, density, c, new Random(seed));
+    }
+
+    private static List<Node> generateRandomConnectedGraph(int n, double density, int c, Random rnd) {
         if (n < 1)
             throw new IllegalArgumentException("n must be >= 1");
         if (density < 0.0 || density > 1.0)
             throw new IllegalArgumentException("density must be in [0,1]");
 
-        Random rnd = new Random();
         List<Node> nodes = new ArrayList<>(n);
         for (int i = 1; i <= n; i++) {
-            nodes.add(new Node(c, i));
+            nodes.add(new Node(c, i, rnd));
         }
 
         long possibleEdges = (long) n * (n - 1) / 2;
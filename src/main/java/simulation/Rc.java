@@ -2,6 +2,7 @@ package simulation;
 
 import measuring.Metrics;
 import persistence.Recorder;
+import persistence.ReplaySpec;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -12,23 +13,60 @@ import java.util.*;
 public class Rc {
     private final int c;
     // Recording is only necessary for visualization (but it would slow down the measuring process)
-    private final Optional<Recorder> recorder;
+    private final Optional<StepListener> recorder;
+    private final RunBudget budget;
+    // All random choices of a run come from here, so a run is reproducible from its seed
+    private final Random rnd;
+    private long deadlineNanos;
 
     private Node vCur;
     private int pin;
     private int activeColor; // self.color in the paper
 
+    // State of a traversal over a CompactGraph (node index instead of Node objects)
+    private CompactGraph compact;
+    private int[] compactColor;
+    private int[] compactParent;
+    private boolean[] compactVisited;
+    private int compactVisitedCount;
+    private int compactCur;
+
     // Metrics for analysis
     public Metrics metrics = new Metrics();
+    // Optional per-node/per-port instrumentation, null when off
+    private TraversalCounters counters;
 
     private final int maxOuterIterations = 10_000;
 
-    public Rc(int c, Recorder recorder) {
+    public Rc(int c, StepListener recorder) {
+        this(c, recorder, RunBudget.UNLIMITED);
+    }
+
+    public Rc(int c, StepListener recorder, RunBudget budget) {
+        this(c, recorder, budget, new Random());
+    }
+
+    /** A run on a given graph is fully determined by the seed. */
+    public Rc(int c, StepListener recorder, RunBudget budget, long seed) {
+        this(c, recorder, budget, new Random(seed));
+    }
+
+    private Rc(int c, StepListener recorder, RunBudget budget, Random rnd) {
         if (c < 2)
             throw new IllegalArgumentException("c must be >= 2");
         this.c = c;
         this.recorder = Optional.ofNullable(recorder);
-        this.activeColor = randomColor(c);
+        this.budget = Objects.requireNonNull(budget);
+        this.rnd = rnd;
+        this.activeColor = rnd.nextInt(c);
+    }
+
+    /**
+     * Attaches counters that every following traversal adds to, or detaches them with null.
+     * The counters must have been created for the graph that is traversed.
+     */
+    public void setCounters(TraversalCounters counters) {
+        this.counters = counters;
     }
 
     public static int randomColor(int c) {
@@ -43,8 +81,16 @@ public class Rc {
         return col;
     }
 
+    private int nextColorExcluding(int excluding) {
+        int col;
+        do {
+            col = rnd.nextInt(c);
+        } while (col == excluding);
+        return col;
+    }
+
     private void debug(String s) {
-        if (recorder.isPresent())
+        if (recorder.isPresent() && recorder.get().debugOutput())
             System.out.println(s);
     }
 
@@ -52,19 +98,30 @@ public class Rc {
      * Implementation of Algorithm 1 (Rc) from the paper.
      * Key insight: GoForward() includes immediate Type-I backtracking if
      * destination has self.color.
+     * The run stops early (and is marked censored) when the budget is exhausted.
      */
     public Metrics traverse(List<Node> allNodes) {
         Objects.requireNonNull(allNodes);
 
         metrics = new Metrics();
+        deadlineNanos = budget.deadlineNanos(System.nanoTime());
+        if (counters != null) {
+            if (counters.nodeCount() != allNodes.size())
+                throw new IllegalArgumentException("Counters were created for a different graph");
+            for (int i = 0; i < allNodes.size(); i++)
+                allNodes.get(i).index = i;
+        }
 
         // Track overall visited nodes to implement stopping condition
         Set<Integer> overallVisited = new HashSet<>();
 
         int outer = 0;
+        outerLoop:
         while (outer < maxOuterIterations && (overallVisited.size() != allNodes.size())) {
+            if (budgetExhausted(true))
+                break;
             // Line 2: Choose self.color uniformly at random from {1,2,...,c}\{self.color}
-            activeColor = randomColorExcluding(c, activeColor);
+            activeColor = nextColorExcluding(activeColor);
             // init - all nodes start with parent = ⊥ (represented as -1)
             for (Node n : allNodes) {
                 n.parent = -2;
@@ -90,6 +147,8 @@ public class Rc {
                 colorChangedThisOuter = true;
                 recorder.ifPresent(r -> r.recordColorChange(vCur, allNodes, activeColor));
                 metrics.colorChanges++;
+                if (counters != null)
+                    counters.nodeRecolors[vCur.index]++;
             }
             visitedThisOuter.add(vCur.id);
             overallVisited.add(vCur.id);
@@ -99,6 +158,8 @@ public class Rc {
 
             // Lines 5-15: Main loop
             while (!(vCur.parent == -1 && pin == vCur.delta() - 1)) {
+                if (budgetExhausted(metrics.iterations % RunBudget.CHECK_INTERVAL == 0))
+                    break outerLoop;
                 // Line 6: if vcur.color ≠ self.color then
                 if (vCur.color != activeColor) {
                     // Lines 7-8: recolor and set parent
@@ -107,6 +168,8 @@ public class Rc {
                     colorChangedThisOuter = true;
                     recorder.ifPresent(r -> r.recordColorChange(vCur, allNodes, activeColor));
                     metrics.colorChanges++;
+                    if (counters != null)
+                        counters.nodeRecolors[vCur.index]++;
 
                     // Line 9: GoForward(nextR(vcur))
                     goForward(nextR(), allNodes, visitedThisOuter, overallVisited);
@@ -142,11 +205,152 @@ public class Rc {
             outer++;
         }
 
-        debug("Traverse finished after outer iterations: " + outer);
+        if (!metrics.censored && outer >= maxOuterIterations && overallVisited.size() != allNodes.size()) {
+            metrics.censored = true;
+            metrics.censorReason = "outerIterations";
+        }
+
+        debug("Traverse finished after outer iterations: " + outer +
+                (metrics.censored ? " (censored: " + metrics.censorReason + ")" : ""));
 
         return metrics;
     }
 
+    /**
+     * Algorithm 1 on a {@link CompactGraph}: the same traversal as {@link #traverse(List)}, with node state kept
+     * in primitive arrays instead of {@link Node} objects so that very large graphs fit in memory.
+     * Node 0 is the start node and initial colors are drawn at random. Recording is not supported here, so an
+     * Rc with a step listener is rejected.
+     */
+    public Metrics traverse(CompactGraph graph) {
+        Objects.requireNonNull(graph);
+        if (recorder.isPresent())
+            throw new IllegalStateException("Step listeners are not supported on a CompactGraph traversal");
+
+        metrics = new Metrics();
+        deadlineNanos = budget.deadlineNanos(System.nanoTime());
+
+        int n = graph.nodeCount();
+        if (counters != null && counters.nodeCount() != n)
+            throw new IllegalArgumentException("Counters were created for a different graph");
+        compact = graph;
+        compactColor = new int[n];
+        compactParent = new int[n];
+        compactVisited = new boolean[n];
+        compactVisitedCount = 0;
+        for (int v = 0; v < n; v++)
+            compactColor[v] = rnd.nextInt(c);
+
+        int outer = 0;
+        outerLoop:
+        while (outer < maxOuterIterations && compactVisitedCount != n) {
+            if (budgetExhausted(true))
+                break;
+            activeColor = nextColorExcluding(activeColor);
+            Arrays.fill(compactParent, -2);
+
+            compactCur = 0;
+            compactParent[compactCur] = -1;
+            pin = 0;
+            boolean colorChangedThisOuter = compactColor[compactCur] != activeColor;
+            if (colorChangedThisOuter) {
+                metrics.colorChanges++;
+                if (counters != null)
+                    counters.nodeRecolors[compactCur]++;
+            }
+            compactColor[compactCur] = activeColor;
+            visitCompact();
+
+            goForwardCompact(0);
+
+            while (!(compactParent[compactCur] == -1 && pin == graph.degree(compactCur) - 1)) {
+                if (budgetExhausted(metrics.iterations % RunBudget.CHECK_INTERVAL == 0))
+                    break outerLoop;
+                int next = (pin + 1) % graph.degree(compactCur);
+                if (compactColor[compactCur] != activeColor) {
+                    compactColor[compactCur] = activeColor;
+                    compactParent[compactCur] = pin;
+                    colorChangedThisOuter = true;
+                    metrics.colorChanges++;
+                    if (counters != null)
+                        counters.nodeRecolors[compactCur]++;
+                    goForwardCompact(next);
+                } else if (compactParent[compactCur] == next) {
+                    compactParent[compactCur] = -1;
+                    migrateCompact(next);
+                } else {
+                    goForwardCompact(next);
+                }
+                metrics.iterations++;
+            }
+
+            if (compactVisitedCount == n && !colorChangedThisOuter)
+                break;
+
+            outer++;
+        }
+
+        if (!metrics.censored && outer >= maxOuterIterations && compactVisitedCount != n) {
+            metrics.censored = true;
+            metrics.censorReason = "outerIterations";
+        }
+
+        compact = null;
+        compactColor = null;
+        compactParent = null;
+        compactVisited = null;
+        return metrics;
+    }
+
+    private void goForwardCompact(int q) {
+        migrateCompact(q);
+        // Type-I backtracking
+        if (compactColor[compactCur] == activeColor)
+            migrateCompact(pin);
+    }
+
+    private void migrateCompact(int port) {
+        int from = compactCur;
+        compactCur = compact.neighbor(from, port);
+        pin = compact.reversePort(from, port);
+        metrics.moves++;
+        if (counters != null) {
+            counters.edgeTraversals[compact.slot(from, port)]++;
+            counters.nodeVisits[compactCur]++;
+        }
+        visitCompact();
+    }
+
+    private void visitCompact() {
+        if (!compactVisited[compactCur]) {
+            compactVisited[compactCur] = true;
+            compactVisitedCount++;
+        }
+    }
+
+    /**
+     * Move budget is checked on every call; wall time and interruption only when sampleClock is set,
+     * since System.nanoTime() is too expensive to call on every iteration.
+     */
+    private boolean budgetExhausted(boolean sampleClock) {
+        if (metrics.moves >= budget.maxMoves)
+            return censor("moves");
+        if (sampleClock) {
+            if (budget.maxWallTimeMillis != 0 && System.nanoTime() - deadlineNanos > 0)
+                return censor("wallTime");
+            if (Thread.currentThread().isInterrupted())
+                return censor("interrupted");
+        }
+        return false;
+    }
+
+    private boolean censor(String reason) {
+        metrics.censored = true;
+        metrics.censorReason = reason;
+        debug("Budget exhausted: " + reason);
+        return true;
+    }
+
     /**
      * Lines 16-19: GoForward function
      * CRITICAL: This function includes Type-I backtracking (line 19)
@@ -178,6 +382,10 @@ public class Rc {
         vCur = v.neighbors.get(i);
         pin = vCur.neighbors.indexOf(v);
         metrics.moves++;
+        if (counters != null) {
+            counters.edgeTraversals[counters.portOffsets[v.index] + i]++;
+            counters.nodeVisits[vCur.index]++;
+        }
         debug("migrated -> vCur=" + vCur.id + " pin=" + pin);
     }
 
@@ -220,14 +428,25 @@ public class Rc {
         Node.createEdge(n9, n10);
         java.util.List<Node> nodes = java.util.Arrays.asList(n1, n2, n3, n4, n5, n6, n7, n8, n9, n10);*/
 
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+        String timestamp = LocalDateTime.now().format(formatter);
+
+        // --replay stores only the seeds; the visualizer regenerates the steps when the file is opened
+        if (Arrays.asList(args).contains("--replay")) {
+            Random seeds = new Random();
+            ReplaySpec spec = ReplaySpec.generated(5, 20, 0.1, seeds.nextLong(), seeds.nextLong());
+            Path out = Paths.get("target", "traces", "replay-" + timestamp + ".json");
+            spec.saveToFile(out);
+            System.out.println("Replay saved to " + out);
+            return;
+        }
+
         List<Node> nodes = Node.generateRandomConnectedGraph(20, 0.1, 5);
 
         Recorder recorder = new Recorder();
         Rc rc = new Rc(5, recorder);
         rc.traverse(nodes);
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
-        String timestamp = LocalDateTime.now().format(formatter);
         Path out = Paths.get("target", "traces", "trace-" + timestamp + ".json");
         recorder.saveToFile(out);
         System.out.println("Trace saved to " + out);
@@ -0,0 +1,29 @@
+package simulation;
+
+/**
+ * Per-run limits enforced inside {@link Rc#traverse}. A run that exhausts its budget stops early and is
+ * reported as censored in its {@link measuring.Metrics} instead of being treated as terminated.
+ */
+public class RunBudget {
+    public static final RunBudget UNLIMITED = new RunBudget(Long.MAX_VALUE, 0);
+
+    // Wall time is only sampled every CHECK_INTERVAL inner iterations to keep the check cheap
+    static final int CHECK_INTERVAL = 4096;
+
+    public final long maxMoves;
+    // 0 means no wall time limit
+    public final long maxWallTimeMillis;
+
+    public RunBudget(long maxMoves, long maxWallTimeMillis) {
+        if (maxMoves < 1)
+            throw new IllegalArgumentException("maxMoves must be >= 1");
+        if (maxWallTimeMillis < 0)
+            throw new IllegalArgumentException("maxWallTimeMillis must be >= 0");
+        this.maxMoves = maxMoves;
+        this.maxWallTimeMillis = maxWallTimeMillis;
+    }
+
+    long deadlineNanos(long startNanos) {
+        return startNanos + maxWallTimeMillis * 1_000_000L;
+    }
+}
@@ -0,0 +1,18 @@
+package simulation;
+
+import java.util.List;
+
+/**
+ * Receives every step of an {@link Rc} traversal over Node objects: each move of the agent and each recoloring,
+ * with the node list in its state after the step.
+ */
+public interface StepListener {
+    void recordMove(Node vCur, List<Node> allNodes, int activeColor);
+
+    void recordColorChange(Node vCur, List<Node> allNodes, int activeColor);
+
+    /** Whether Rc should print its debug output while this listener is attached. */
+    default boolean debugOutput() {
+        return false;
+    }
+}
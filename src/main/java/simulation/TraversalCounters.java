@@ -0,0 +1,49 @@
+package simulation;
+
+import java.util.List;
+
+/**
+ * Optional instrumentation of {@link Rc}: how often each node was entered, how often it was recolored and how
+ * often each port was used to leave it. Nodes are addressed by index (position in the traversed node list);
+ * the traversals of port p of node v are at {@code edgeTraversals[portOffsets[v] + p]}.
+ */
+public class TraversalCounters {
+    public final int[] nodeVisits;
+    public final int[] nodeRecolors;
+    public final int[] edgeTraversals;
+    public final int[] portOffsets;
+
+    /** Counters for nodes with the given degrees. */
+    public TraversalCounters(int[] degrees) {
+        portOffsets = new int[degrees.length + 1];
+        for (int v = 0; v < degrees.length; v++)
+            portOffsets[v + 1] = portOffsets[v] + degrees[v];
+        nodeVisits = new int[degrees.length];
+        nodeRecolors = new int[degrees.length];
+        edgeTraversals = new int[portOffsets[degrees.length]];
+    }
+
+    public static TraversalCounters forNodes(List<Node> nodes) {
+        return new TraversalCounters(nodes.stream().mapToInt(Node::delta).toArray());
+    }
+
+    public static TraversalCounters forGraph(CompactGraph graph) {
+        int[] degrees = new int[graph.nodeCount()];
+        for (int v = 0; v < degrees.length; v++)
+            degrees[v] = graph.degree(v);
+        return new TraversalCounters(degrees);
+    }
+
+    public int nodeCount() {
+        return nodeVisits.length;
+    }
+
+    public int degree(int v) {
+        return portOffsets[v + 1] - portOffsets[v];
+    }
+
+    /** Traversals of port p of node v. */
+    public int edgeTraversals(int v, int port) {
+        return edgeTraversals[portOffsets[v] + port];
+    }
+}